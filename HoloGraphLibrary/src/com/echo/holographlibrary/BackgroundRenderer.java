@@ -0,0 +1,198 @@
+/*
+ * 	   Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+
+package com.echo.holographlibrary;
+
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.Config;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.view.View;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Draws a graph's data layer on a background thread. Each {@link Frame} is a
+ * snapshot of the data taken on the UI thread; it is rasterized into a back
+ * buffer and swapped in on the UI thread, where {@link #draw(Canvas)} blits
+ * the latest completed frame. Submitting a frame cancels every older one that
+ * has not been swapped in yet.
+ */
+final class BackgroundRenderer {
+
+    /**
+     * A snapshot of a graph's data that can be drawn off the UI thread.
+     */
+    interface Frame {
+
+        /**
+         * Draws the snapshot. Runs on the render thread, so it must not touch
+         * anything the UI thread may change.
+         */
+        void render(Canvas canvas);
+
+        /**
+         * Hands what {@link #render(Canvas)} worked out, such as hit areas and
+         * layout, back to the graph. Runs on the UI thread as the frame is
+         * swapped in.
+         */
+        void publish();
+    }
+
+    private static ExecutorService sharedExecutor;
+
+    private final View view;
+    private final Executor executor;
+    private final AtomicInteger generation = new AtomicInteger();
+    private final Object lock = new Object();
+    // Only touched on the UI thread.
+    private Bitmap front;
+    // Guarded by lock.
+    private Bitmap spare;
+
+    BackgroundRenderer(View view) {
+        this.view = view;
+        this.executor = getSharedExecutor();
+    }
+
+    /**
+     * One thread shared by every graph, so a screen full of graphs does not
+     * start a thread each.
+     */
+    private static synchronized Executor getSharedExecutor() {
+        if (sharedExecutor == null) {
+            sharedExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "HoloGraph render");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sharedExecutor;
+    }
+
+    /**
+     * Queues {@code frame} to be drawn into a {@code width} by {@code height}
+     * buffer. Must be called on the UI thread.
+     */
+    void submit(final Frame frame, final int width, final int height) {
+        if (width <= 0 || height <= 0) return;
+        final int frameGeneration = generation.incrementAndGet();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                render(frame, width, height, frameGeneration);
+            }
+        });
+    }
+
+    /**
+     * Blits the latest completed frame and returns whether there was one.
+     */
+    boolean draw(Canvas canvas) {
+        if (front == null) return false;
+        canvas.drawBitmap(front, 0, 0, null);
+        return true;
+    }
+
+    /**
+     * Cancels pending frames and frees both buffers. The renderer can be used
+     * again afterwards.
+     */
+    void release() {
+        generation.incrementAndGet();
+        if (front != null) {
+            front.recycle();
+            front = null;
+        }
+        synchronized (lock) {
+            if (spare != null) {
+                spare.recycle();
+                spare = null;
+            }
+        }
+    }
+
+    private void render(final Frame frame, int width, int height, final int frameGeneration) {
+        // Newer data arrived while this frame was queued.
+        if (frameGeneration != generation.get()) return;
+
+        final Bitmap buffer = takeSpare(width, height);
+        buffer.eraseColor(Color.TRANSPARENT);
+        frame.render(new Canvas(buffer));
+
+        if (frameGeneration != generation.get()) {
+            giveSpare(buffer);
+            return;
+        }
+        view.post(new Runnable() {
+            @Override
+            public void run() {
+                swap(frame, buffer, frameGeneration);
+            }
+        });
+    }
+
+    private void swap(Frame frame, Bitmap buffer, int frameGeneration) {
+        if (frameGeneration != generation.get()) {
+            giveSpare(buffer);
+            return;
+        }
+        Bitmap old = front;
+        front = buffer;
+        if (old != null) {
+            giveSpare(old);
+        }
+        frame.publish();
+        view.invalidate();
+    }
+
+    private Bitmap takeSpare(int width, int height) {
+        Bitmap buffer;
+        synchronized (lock) {
+            buffer = spare;
+            spare = null;
+        }
+        if (buffer != null && (buffer.getWidth() != width || buffer.getHeight() != height)) {
+            buffer.recycle();
+            buffer = null;
+        }
+        if (buffer == null) {
+            buffer = Bitmap.createBitmap(width, height, Config.ARGB_8888);
+        }
+        return buffer;
+    }
+
+    private void giveSpare(Bitmap buffer) {
+        synchronized (lock) {
+            if (spare == null) {
+                spare = buffer;
+                return;
+            }
+        }
+        buffer.recycle();
+    }
+
+}
@@ -27,9 +27,19 @@ import android.graphics.Path;
 import android.graphics.Region;
 
 import java.util.ArrayList;
+import java.util.Collection;
 
 public class Bar {
 
+    /** The value changed, which rescales every bar. */
+    public static final int CHANGED_VALUE = 0;
+    /** The name drawn under the bar changed. */
+    public static final int CHANGED_NAME = 1;
+    /** The color changed. */
+    public static final int CHANGED_COLOR = 2;
+    /** The stack segments, or whether the bar is stacked, changed. */
+    public static final int CHANGED_STACK = 3;
+
     private int color;
 	private String name;
 	private float value;
@@ -37,25 +47,33 @@ public class Bar {
 	private Region region;
     private boolean isStackedBar;
     private ArrayList<BarStackSegment> values = new ArrayList<BarStackSegment>();
+    private ArrayList<OnBarChangedListener> listeners;
 	
 	public int getColor() {
 		return color;
 	}
 	public void setColor(int color) {
 		this.color = color;
+		fireChanged(CHANGED_COLOR);
 	}
 	public String getName() {
 		return name;
 	}
 	public void setName(String name) {
 		this.name = name;
+		fireChanged(CHANGED_NAME);
 	}
 	public float getValue() {
 		return value;
 	}
 	public void setValue(float value) {
 		this.value = value;
+		fireChanged(CHANGED_VALUE);
 	}
+	/**
+	 * Not set by {@link BarGraph}; {@link #getRegion()} holds the area the
+	 * bar was last drawn in.
+	 */
 	public Path getPath() {
 		return path;
 	}
@@ -70,15 +88,78 @@ public class Bar {
 	}
     public void setStackedBar(boolean stacked){
         isStackedBar = stacked;
+        fireChanged(CHANGED_STACK);
     }
     public boolean getStackedBar(){
         return isStackedBar;
     }
     public void AddStackValue(BarStackSegment val){
         values.add(val);
+        fireChanged(CHANGED_STACK);
     }
     public ArrayList<BarStackSegment> getStackedValues(){
         return values;
     }
-	
+    /**
+     * Replaces every stack segment at once.
+     */
+    public void setStackedValues(Collection<BarStackSegment> segments){
+        values.clear();
+        values.addAll(segments);
+        fireChanged(CHANGED_STACK);
+    }
+
+    /**
+     * Registers {@code listener} to hear about changes to the value, name,
+     * color or stack segments of this bar.
+     */
+    public void addOnBarChangedListener(OnBarChangedListener listener) {
+        if (listeners == null) {
+            listeners = new ArrayList<OnBarChangedListener>(1);
+        }
+        listeners.add(listener);
+    }
+
+    public void removeOnBarChangedListener(OnBarChangedListener listener) {
+        if (listeners != null) {
+            listeners.remove(listener);
+        }
+    }
+
+    private void fireChanged(int change) {
+        if (listeners == null) return;
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).onBarChanged(this, change);
+        }
+    }
+
+    /**
+     * Returns a copy of the values and colors that can be drawn on another
+     * thread while this bar keeps changing.
+     */
+    Bar snapshot() {
+        Bar copy = new Bar();
+        copy.color = color;
+        copy.name = name;
+        copy.value = value;
+        copy.isStackedBar = isStackedBar;
+        try {
+            for (BarStackSegment segment : values) {
+                copy.values.add((BarStackSegment) segment.clone());
+            }
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+        return copy;
+    }
+
+    public interface OnBarChangedListener {
+        /**
+         * @param change what changed: {@link #CHANGED_VALUE},
+         *               {@link #CHANGED_NAME}, {@link #CHANGED_COLOR} or
+         *               {@link #CHANGED_STACK}
+         */
+        void onBarChanged(Bar bar, int change);
+    }
+
 }
@@ -38,40 +38,104 @@ import java.util.Collections;
 public class BarGraph extends View {
 
     private ArrayList<Bar> points = new ArrayList<Bar>();
-    private Paint p = new Paint();
-    private Path path = new Path();
-    private Rect r;
     private boolean showBarText = true;
     private int indexSelected = -1;
     private OnBarClickedListener listener;
     private Bitmap fullImage;
+    private Canvas fullCanvas;
+    private BackgroundRenderer renderer;
+    private BarFrame frame;
+    private final UpdateScheduler scheduler = new UpdateScheduler(this);
+    private final Bar.OnBarChangedListener barListener = new Bar.OnBarChangedListener() {
+        @Override
+        public void onBarChanged(Bar bar, int change) {
+            if (change == Bar.CHANGED_COLOR || change == Bar.CHANGED_NAME) {
+                // Neither moves a bar, so only the strip under this one is redrawn.
+                redrawBar(bar);
+            } else {
+                update();
+            }
+        }
+    };
+    private boolean attached = false;
+    private final Rect redrawArea = new Rect();
+    private final Rect barArea = new Rect();
     private boolean shouldUpdate = false;
     private String unit = "$";
     private Boolean append = false;
-    private Rect r2 = new Rect();
-    private Rect r3 = new Rect();
+    private Rect dirty = new Rect();
+    private Paint selectionPaint = new Paint();
+    private int[] barBounds = new int[0];
+    private int barCount = 0;
+
+    // Room for anti-aliasing and glyph overhang around a bar's drawn strip.
+    private static final int EXTENT_SLACK = 2;
 
     public BarGraph(Context context) {
-        super(context);
+        this(context, null);
     }
 
     public BarGraph(Context context, AttributeSet attrs) {
         super(context, attrs);
+        selectionPaint.setColor(Color.parseColor("#33B5E5"));
+        selectionPaint.setAlpha(100);
+        selectionPaint.setAntiAlias(true);
     }
 
     public void setShowBarText(boolean show) {
         showBarText = show;
     }
 
+    /**
+     * Shows {@code points}. The graph redraws by itself when one of the bars
+     * changes while it is attached to a window.
+     */
     public void setBars(ArrayList<Bar> points) {
+        for (Bar bar : this.points) {
+            bar.removeOnBarChangedListener(barListener);
+        }
         this.points = points;
-        shouldUpdate = true;
-        postInvalidate();
+        if (attached) {
+            for (Bar bar : points) {
+                bar.addOnBarChangedListener(barListener);
+            }
+        }
+        update();
     }
 
+    /**
+     * Redraws the bars at the next frame. Calls made before that frame are
+     * coalesced into one redraw.
+     */
     public void update() {
         shouldUpdate = true;
-        postInvalidate();
+        scheduler.schedule();
+    }
+
+    /**
+     * Redraws at most {@code framesPerSecond} times a second however often the
+     * bars change. 0, the default, redraws at the display rate.
+     */
+    public void setMaxFrameRate(int framesPerSecond) {
+        scheduler.setMaxFrameRate(framesPerSecond);
+    }
+
+    public int getMaxFrameRate() {
+        return scheduler.getMaxFrameRate();
+    }
+
+    /**
+     * Starts a batch of changes: {@link #update()} and the setters that call it
+     * only record that the graph needs redrawing until the matching
+     * {@link #endUpdate()}, which redraws once. Batches nest. Call both on the
+     * UI thread.
+     */
+    public void beginUpdate() {
+        scheduler.beginBatch();
+    }
+
+    public void endUpdate() {
+        scheduler.endBatch();
     }
 
     public void setUnit(String unit) {
@@ -96,12 +160,114 @@ public class BarGraph extends View {
 
     public void onDraw(Canvas ca) {
 
-        if (fullImage == null || shouldUpdate) {
-            fullImage = Bitmap.createBitmap(getWidth(), getHeight(), Config.ARGB_8888);
-            Canvas canvas = new Canvas(fullImage);
-            canvas.drawColor(Color.TRANSPARENT);
-            NinePatchDrawable popup = (NinePatchDrawable) this.getResources().getDrawable(R.drawable.popup_black);
+        if (renderer == null && fullImage == null) {
+            allocateFullImage(getWidth(), getHeight());
+            if (fullImage == null) return;
+        }
+        if (shouldUpdate) {
+            shouldUpdate = false;
+            if (renderer != null) {
+                ArrayList<Bar> copies = new ArrayList<Bar>(points.size());
+                for (Bar bar : points) {
+                    copies.add(bar.snapshot());
+                }
+                BarFrame next = new BarFrame();
+                next.capture(copies);
+                renderer.submit(next, getWidth(), getHeight());
+            } else {
+                if (frame == null) {
+                    frame = new BarFrame();
+                }
+                fullImage.eraseColor(Color.TRANSPARENT);
+                frame.capture(points);
+                frame.render(fullCanvas);
+                frame.publish();
+            }
+            redrawArea.setEmpty();
+        } else if (!redrawArea.isEmpty()) {
+            // Everything outside the area is still what a full render would draw.
+            fullCanvas.save();
+            fullCanvas.clipRect(redrawArea);
+            fullCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+            frame.capture(points);
+            frame.render(fullCanvas);
+            frame.publish();
+            fullCanvas.restore();
+            redrawArea.setEmpty();
+        }
+
+        if (renderer != null) {
+            renderer.draw(ca);
+        } else {
+            ca.drawBitmap(fullImage, 0, 0, null);
+        }
+
+        // The selection is drawn over the cached bars so touches never rebuild them.
+        if (indexSelected >= 0 && indexSelected < barCount && listener != null) {
+            int i = indexSelected * 4;
+            ca.drawRect(barBounds[i], barBounds[i + 1], barBounds[i + 2], barBounds[i + 3], selectionPaint);
+        }
+
+    }
+
+    /**
+     * Draws the bars on a background thread from a copy of them taken at each
+     * {@link #update()}, and only copies the latest finished frame to the
+     * screen. Frames made stale by newer data are dropped.
+     */
+    public void setBackgroundRendering(boolean enabled) {
+        if (enabled == (renderer != null)) return;
+        if (enabled) {
+            releaseFullImage();
+            renderer = new BackgroundRenderer(this);
+        } else {
+            renderer.release();
+            renderer = null;
+        }
+        indexSelected = -1;
+        update();
+    }
 
+    public boolean isBackgroundRendering() {
+        return renderer != null;
+    }
+
+    /**
+     * One rendering of the bars, together with the hit areas worked out while
+     * drawing them. Everything it reads from the graph is captured on the UI
+     * thread, so a frame over copied bars can be rendered in the background.
+     */
+    private final class BarFrame implements BackgroundRenderer.Frame {
+
+        private ArrayList<Bar> bars;
+        private ArrayList<Bar> source;
+        private int width, height;
+        private boolean showBarText, append;
+        private String unit;
+        private NinePatchDrawable popup;
+
+        private int[] bounds = new int[0];
+        private int[] extents = new int[0];
+        private int[] centers = new int[0];
+        private Region[] regions = new Region[0];
+        private final Paint p = new Paint();
+        private final Rect r = new Rect();
+        private final Rect r2 = new Rect();
+        private final Rect r3 = new Rect();
+
+        void capture(ArrayList<Bar> bars) {
+            this.bars = bars;
+            this.source = points;
+            width = getWidth();
+            height = getHeight();
+            showBarText = BarGraph.this.showBarText;
+            append = isAppended();
+            unit = BarGraph.this.unit;
+            popup = (NinePatchDrawable) getResources().getDrawable(R.drawable.popup_black);
+        }
+
+        @Override
+        public void render(Canvas canvas) {
             float maxValue = 0;
             float padding = 7;
             int selectPadding = 4;
@@ -111,9 +277,9 @@ public class BarGraph extends View {
             if (showBarText) {
                 this.p.setTextSize(40);
                 this.p.getTextBounds(unit, 0, 1, r3);
-                usableHeight = getHeight() - bottomPadding - Math.abs(r3.top - r3.bottom) - 26;
+                usableHeight = height - bottomPadding - Math.abs(r3.top - r3.bottom) - 26;
             } else {
-                usableHeight = getHeight() - bottomPadding;
+                usableHeight = height - bottomPadding;
             }
 
 
@@ -122,20 +288,28 @@ public class BarGraph extends View {
             p.setAlpha(50);
             p.setAntiAlias(true);
 
-            canvas.drawLine(0, getHeight() - bottomPadding + 10, getWidth(), getHeight() - bottomPadding + 10, p);
+            canvas.drawLine(0, height - bottomPadding + 10, width, height - bottomPadding + 10, p);
 
-            float barWidth = (getWidth() - (padding * 2) * points.size()) / points.size();
+            float barWidth = (width - (padding * 2) * bars.size()) / bars.size();
 
-            for (Bar p : points) {
+            for (Bar p : bars) {
                 maxValue += p.getValue();
             }
 
-            r = new Rect();
-
-            path.reset();
+            if (bounds.length < bars.size() * 4) {
+                bounds = new int[bars.size() * 4];
+                extents = new int[bars.size() * 2];
+                centers = new int[bars.size()];
+                Region[] grown = new Region[bars.size()];
+                System.arraycopy(regions, 0, grown, 0, regions.length);
+                for (int i = regions.length; i < grown.length; i++) {
+                    grown[i] = new Region();
+                }
+                regions = grown;
+            }
 
             int count = 0;
-            for (Bar p : points) {
+            for (Bar p : bars) {
 
                 if(p.getStackedBar()){
                     // deep copy of StackedValues
@@ -156,28 +330,31 @@ public class BarGraph extends View {
                     }
                     Collections.reverse(values);
 
+                    int barTop = height;
                     for(BarStackSegment value : values) {
-                        r.set((int) ((padding * 2) * count + padding + barWidth * count), (int) ((getHeight() - bottomPadding - (usableHeight * (value.Value / maxValue)))), (int) ((padding * 2) * count + padding + barWidth * (count + 1)), (int) ((getHeight() - bottomPadding)));
-                        path.addRect(new RectF(r.left - selectPadding, r.top - selectPadding, r.right + selectPadding, r.bottom + selectPadding), Path.Direction.CW);
-                        p.setPath(path);
-                        p.setRegion(new Region(r.left - selectPadding, r.top - selectPadding, r.right + selectPadding, r.bottom + selectPadding));
+                        r.set((int) ((padding * 2) * count + padding + barWidth * count), (int) ((height - bottomPadding - (usableHeight * (value.Value / maxValue)))), (int) ((padding * 2) * count + padding + barWidth * (count + 1)), (int) ((height - bottomPadding)));
                         this.p.setColor(value.Color);
                         this.p.setAlpha(255);
                         canvas.drawRect(r, this.p);
+                        barTop = Math.min(barTop, r.top);
                     }
+                    setBounds(count, r.left - selectPadding, barTop - selectPadding, r.right + selectPadding, r.bottom + selectPadding);
                 }else {
-                    r.set((int) ((padding * 2) * count + padding + barWidth * count), (int) (getHeight() - bottomPadding - (usableHeight * (p.getValue() / maxValue))), (int) ((padding * 2) * count + padding + barWidth * (count + 1)), (int) (getHeight() - bottomPadding));
-                    path.addRect(new RectF(r.left - selectPadding, r.top - selectPadding, r.right + selectPadding, r.bottom + selectPadding), Path.Direction.CW);
-                    p.setPath(path);
-                    p.setRegion(new Region(r.left - selectPadding, r.top - selectPadding, r.right + selectPadding, r.bottom + selectPadding));
+                    r.set((int) ((padding * 2) * count + padding + barWidth * count), (int) (height - bottomPadding - (usableHeight * (p.getValue() / maxValue))), (int) ((padding * 2) * count + padding + barWidth * (count + 1)), (int) (height - bottomPadding));
                     this.p.setColor(p.getColor());
                     this.p.setAlpha(255);
                     canvas.drawRect(r, this.p);
+                    setBounds(count, r.left - selectPadding, r.top - selectPadding, r.right + selectPadding, r.bottom + selectPadding);
                 }
 
 
                 this.p.setTextSize(20);
-                canvas.drawText(p.getName(), (int) (((r.left + r.right) / 2) - (this.p.measureText(p.getName()) / 2)), getHeight() - 5, this.p);
+                float nameWidth = this.p.measureText(p.getName());
+                int nameLeft = (int) (((r.left + r.right) / 2) - (nameWidth / 2));
+                canvas.drawText(p.getName(), nameLeft, height - 5, this.p);
+                centers[count] = (r.left + r.right) / 2;
+                extents[count * 2] = Math.min(r.left, nameLeft) - EXTENT_SLACK;
+                extents[count * 2 + 1] = Math.max(r.right, nameLeft + (int) Math.ceil(nameWidth)) + EXTENT_SLACK;
                 if (showBarText) {
                     this.p.setTextSize(40);
                     this.p.setColor(Color.WHITE);
@@ -185,53 +362,169 @@ public class BarGraph extends View {
                     if (popup != null)
                         popup.setBounds((int) (((r.left + r.right) / 2) - (this.p.measureText(unit + p.getValue()) / 2)) - 14, r.top + (r2.top - r2.bottom) - 26, (int) (((r.left + r.right) / 2) + (this.p.measureText(unit + p.getValue()) / 2)) + 14, r.top);
                     popup.draw(canvas);
-                    if (isAppended())
+                    if (append)
                         canvas.drawText(p.getValue() + unit, (int) (((r.left + r.right) / 2) - (this.p.measureText(unit + p.getValue()) / 2)), r.top - 20, this.p);
                     else
                         canvas.drawText(unit + p.getValue(), (int) (((r.left + r.right) / 2) - (this.p.measureText(unit + p.getValue()) / 2)), r.top - 20, this.p);
                 }
-                if (indexSelected == count && listener != null) {
-                    this.p.setColor(Color.parseColor("#33B5E5"));
-                    this.p.setAlpha(100);
-                    canvas.drawPath(p.getPath(), this.p);
-                    this.p.setAlpha(255);
-                }
                 count++;
             }
-            shouldUpdate = false;
         }
 
-        ca.drawBitmap(fullImage, 0, 0, null);
+        @Override
+        public void publish() {
+            int count = Math.min(bars.size(), source.size());
+            if (barBounds.length < count * 4) {
+                barBounds = new int[count * 4];
+            }
+            System.arraycopy(bounds, 0, barBounds, 0, count * 4);
+            barCount = count;
+            for (int i = 0; i < count; i++) {
+                source.get(i).setRegion(regions[i]);
+            }
+        }
+
+        /**
+         * Writes to {@code out} the strip drawn in the color or with the name
+         * of bar {@code index}, widened to fit {@code name} in place of the
+         * name it was drawn with.
+         */
+        void getExtent(int index, String name, Rect out) {
+            int left = extents[index * 2];
+            int right = extents[index * 2 + 1];
+            if (name != null) {
+                p.setTextSize(20);
+                float half = p.measureText(name) / 2;
+                left = Math.min(left, (int) (centers[index] - half) - EXTENT_SLACK);
+                right = Math.max(right, (int) Math.ceil(centers[index] + half) + EXTENT_SLACK);
+            }
+            out.set(left, 0, right, height);
+        }
 
+        private void setBounds(int index, int left, int top, int right, int bottom) {
+            int i = index * 4;
+            bounds[i] = left;
+            bounds[i + 1] = top;
+            bounds[i + 2] = right;
+            bounds[i + 3] = bottom;
+            regions[index].set(left, top, right, bottom);
+        }
+    }
+
+    /**
+     * Redraws the strip of the cached image where {@code bar} and its name
+     * are drawn. The bars around it are only re-rendered inside that strip.
+     * Without a cached image to patch, the whole graph is updated.
+     */
+    private void redrawBar(Bar bar) {
+        if (renderer != null || frame == null || fullImage == null || shouldUpdate) {
+            update();
+            return;
+        }
+        boolean found = false;
+        for (int i = 0; i < barCount && i < points.size(); i++) {
+            if (points.get(i) != bar) continue;
+            frame.getExtent(i, bar.getName(), barArea);
+            redrawArea.union(barArea);
+            found = true;
+        }
+        if (found) {
+            scheduler.schedule(redrawArea);
+        } else {
+            update();
+        }
+    }
+
+    private int findBar(int x, int y) {
+        for (int index = 0; index < barCount; index++) {
+            int i = index * 4;
+            if (x >= barBounds[i] && x < barBounds[i + 2] && y >= barBounds[i + 1] && y < barBounds[i + 3]) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Invalidates only the area covered by the selection of bar {@code index}.
+     */
+    private void invalidateBar(int index) {
+        if (index < 0 || index >= barCount) return;
+        int i = index * 4;
+        dirty.set(barBounds[i], barBounds[i + 1], barBounds[i + 2], barBounds[i + 3]);
+        invalidate(dirty);
     }
 
     @Override
-    public boolean onTouchEvent(@NotNull MotionEvent event) {
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        if (renderer != null) {
+            shouldUpdate = true;
+        } else {
+            allocateFullImage(w, h);
+        }
+    }
 
-        Point point = new Point();
-        point.x = (int) event.getX();
-        point.y = (int) event.getY();
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        attached = true;
+        for (Bar bar : points) {
+            bar.addOnBarChangedListener(barListener);
+        }
+        // Changes made while detached went unheard.
+        update();
+    }
 
-        int count = 0;
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        attached = false;
+        // The bars may outlive the view; they must not keep it reachable.
         for (Bar bar : points) {
-            Region r = new Region();
-            r.setPath(bar.getPath(), bar.getRegion());
-            if (r.contains(point.x, point.y) && event.getAction() == MotionEvent.ACTION_DOWN) {
-                indexSelected = count;
-            } else if (event.getAction() == MotionEvent.ACTION_UP) {
-                if (r.contains(point.x, point.y) && listener != null) {
-                    listener.onClick(indexSelected);
-                }
-                indexSelected = -1;
-            }
-            count++;
+            bar.removeOnBarChangedListener(barListener);
         }
+        scheduler.cancel();
+        releaseFullImage();
+        if (renderer != null) {
+            renderer.release();
+            shouldUpdate = true;
+        }
+    }
 
-        if (event.getAction() == MotionEvent.ACTION_DOWN || event.getAction() == MotionEvent.ACTION_UP) {
+    private void allocateFullImage(int width, int height) {
+        releaseFullImage();
+        if (width > 0 && height > 0) {
+            fullImage = Bitmap.createBitmap(width, height, Config.ARGB_8888);
+            fullCanvas = new Canvas(fullImage);
             shouldUpdate = true;
-            postInvalidate();
         }
+    }
+
+    private void releaseFullImage() {
+        if (fullImage != null) {
+            fullImage.recycle();
+            fullImage = null;
+            fullCanvas = null;
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(@NotNull MotionEvent event) {
+
+        int bar = findBar((int) event.getX(), (int) event.getY());
 
+        if (event.getAction() == MotionEvent.ACTION_DOWN) {
+            invalidateBar(indexSelected);
+            indexSelected = bar;
+            invalidateBar(indexSelected);
+        } else if (event.getAction() == MotionEvent.ACTION_UP) {
+            if (bar != -1 && indexSelected != -1 && listener != null) {
+                listener.onClick(indexSelected);
+            }
+            invalidateBar(indexSelected);
+            indexSelected = -1;
+        }
 
         return true;
     }
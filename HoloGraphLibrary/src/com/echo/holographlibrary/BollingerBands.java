@@ -0,0 +1,94 @@
+/*
+ * 	   Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+
+package com.echo.holographlibrary;
+
+/**
+ * The moving average of the last {@code window} Y values of a line, with
+ * bands {@code k} standard deviations above and below it. {@link #getLine()}
+ * is the average.
+ * <p>
+ * The running sums are taken relative to the first value, so values far from
+ * zero with a small spread keep their precision.
+ */
+public class BollingerBands extends LineOverlay {
+
+    private final float[] window;
+    private final float k;
+    private int head;
+    private int count;
+    private boolean started;
+    private float shift;
+    private double sum;
+    private double sumOfSquares;
+
+    public BollingerBands(Line source, int window, float k) {
+        super(source, 3);
+        if (window < 1) {
+            throw new IllegalArgumentException("window must be positive: " + window);
+        }
+        this.window = new float[window];
+        this.k = k;
+        attach();
+    }
+
+    public Line getUpperLine() {
+        return getLine(1);
+    }
+
+    public Line getLowerLine() {
+        return getLine(2);
+    }
+
+    @Override
+    void reset() {
+        head = 0;
+        count = 0;
+        started = false;
+        sum = 0;
+        sumOfSquares = 0;
+    }
+
+    @Override
+    void add(float y, float[] out) {
+        if (!started) {
+            shift = y;
+            started = true;
+        }
+        if (count == window.length) {
+            double old = window[head] - shift;
+            sum -= old;
+            sumOfSquares -= old * old;
+        } else {
+            count++;
+        }
+        window[head] = y;
+        head = (head + 1) % window.length;
+        double value = y - shift;
+        sum += value;
+        sumOfSquares += value * value;
+
+        double mean = sum / count;
+        double deviation = Math.sqrt(Math.max(0, sumOfSquares / count - mean * mean));
+        out[0] = (float) (shift + mean);
+        out[1] = (float) (shift + mean + k * deviation);
+        out[2] = (float) (shift + mean - k * deviation);
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * 	   Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+
+package com.echo.holographlibrary;
+
+/**
+ * An append-only {@link Line} that keeps its points compressed, for long
+ * running series such as a day of metrics sampled every second. Points are
+ * sealed into Gorilla-compressed blocks of 1024; regularly spaced X values
+ * cost about a bit each and slowly changing Y values a few bits more.
+ * <p>
+ * The newest, still open block and the last few blocks read are held
+ * uncompressed, so appending and redrawing the live end of the line do not
+ * decode anything. Like a {@link SourceLine}, it draws zoomed out from a
+ * summary of every 256 points instead of decoding every block.
+ * <p>
+ * Points cannot be changed or removed once added, and labels are not
+ * supported.
+ */
+public class CompressedLine extends SourceLine {
+
+    private static final int BLOCK_SIZE = 1024;
+    private static final int CACHED_BLOCKS = 8;
+
+    private final CompressedSeries series;
+    private boolean sortedX = true;
+    private float lastX;
+    private float minX, maxX, minY, maxY;
+
+    public CompressedLine() {
+        this(new CompressedSeries(BLOCK_SIZE));
+    }
+
+    private CompressedLine(CompressedSeries series) {
+        super(series, BLOCK_SIZE, CACHED_BLOCKS);
+        this.series = series;
+    }
+
+    @Override
+    public void addPoint(float x, float y) {
+        synchronized (this) {
+            append(x, y);
+        }
+        refresh();
+    }
+
+    @Override
+    public void addPoints(float[] xs, float[] ys, int off, int len) {
+        if (off < 0 || len < 0 || off + len > xs.length || off + len > ys.length) {
+            throw new IndexOutOfBoundsException("off=" + off + ", len=" + len);
+        }
+        synchronized (this) {
+            for (int i = off; i < off + len; i++) {
+                append(xs[i], ys[i]);
+            }
+        }
+        refresh();
+    }
+
+    @Override
+    public void clear() {
+        synchronized (this) {
+            series.clear();
+            sortedX = true;
+        }
+        reload();
+    }
+
+    @Override
+    public void removePoint(int index) {
+        throw new UnsupportedOperationException("CompressedLine is append-only");
+    }
+
+    @Override
+    public void setX(int index, float x) {
+        throw new UnsupportedOperationException("CompressedLine is append-only");
+    }
+
+    @Override
+    public void setY(int index, float y) {
+        throw new UnsupportedOperationException("CompressedLine is append-only");
+    }
+
+    @Override
+    public synchronized float getMinX() {
+        return getSize() > 0 ? minX : 0;
+    }
+
+    @Override
+    public synchronized float getMaxX() {
+        return getSize() > 0 ? maxX : 0;
+    }
+
+    @Override
+    public synchronized float getMinY() {
+        return getSize() > 0 ? minY : 0;
+    }
+
+    @Override
+    public synchronized float getMaxY() {
+        return getSize() > 0 ? maxY : 0;
+    }
+
+    @Override
+    public synchronized boolean isSortedX() {
+        return sortedX;
+    }
+
+    /**
+     * The bytes taken by the sealed blocks, not counting the open block, the
+     * decoded cache or the summaries.
+     */
+    public synchronized long getCompressedBytes() {
+        return series.getCompressedBytes();
+    }
+
+    private void append(float x, float y) {
+        if (series.getSize() == 0) {
+            minX = maxX = x;
+            minY = maxY = y;
+        } else {
+            if (x < lastX) sortedX = false;
+            if (x < minX) minX = x;
+            if (x > maxX) maxX = x;
+            if (y < minY) minY = y;
+            if (y > maxY) maxY = y;
+        }
+        lastX = x;
+        series.append(x, y);
+    }
+
+}
@@ -0,0 +1,267 @@
+/*
+ * 	   Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+
+package com.echo.holographlibrary;
+
+import java.util.ArrayList;
+
+/**
+ * An append-only series stored in Gorilla-compressed blocks. The newest block
+ * stays uncompressed until it is full, so appending costs no encoding until
+ * then and reading the live tail costs no decoding.
+ * <p>
+ * X values are encoded as the delta of the delta of their float bits, which
+ * is zero, one bit, for evenly spaced X values within a power of two. Y
+ * values are XORed with the previous one and only the bits that differ are
+ * stored. Both are lossless.
+ */
+final class CompressedSeries implements SeriesSource {
+
+    private final int blockSize;
+    private final ArrayList<long[]> blocks = new ArrayList<long[]>();
+    private final float[] tailXs;
+    private final float[] tailYs;
+    private int tailSize;
+    private long compressedBits;
+    private final BitWriter writer = new BitWriter();
+    private float[] decodedXs;
+    private float[] decodedYs;
+
+    CompressedSeries(int blockSize) {
+        this.blockSize = blockSize;
+        tailXs = new float[blockSize];
+        tailYs = new float[blockSize];
+    }
+
+    void append(float x, float y) {
+        tailXs[tailSize] = x;
+        tailYs[tailSize] = y;
+        if (++tailSize == blockSize) {
+            long[] block = encode(tailXs, tailYs, blockSize);
+            blocks.add(block);
+            compressedBits += writer.bitCount;
+            tailSize = 0;
+        }
+    }
+
+    void clear() {
+        blocks.clear();
+        tailSize = 0;
+        compressedBits = 0;
+    }
+
+    /**
+     * The bytes taken by the compressed blocks, without the uncompressed tail.
+     */
+    long getCompressedBytes() {
+        return (compressedBits + 7) / 8;
+    }
+
+    @Override
+    public int getSize() {
+        return blocks.size() * blockSize + tailSize;
+    }
+
+    @Override
+    public void read(int from, int to, float[] xs, float[] ys, int offset) {
+        while (from < to) {
+            int block = from / blockSize;
+            int start = from - block * blockSize;
+            int count = Math.min(to - from, blockSize - start);
+            if (block == blocks.size()) {
+                System.arraycopy(tailXs, start, xs, offset, count);
+                System.arraycopy(tailYs, start, ys, offset, count);
+            } else if (start == 0 && count == blockSize && offset == 0) {
+                // Straight into a page of the same size.
+                decode(blocks.get(block), xs, ys, blockSize);
+            } else {
+                if (decodedXs == null) {
+                    decodedXs = new float[blockSize];
+                    decodedYs = new float[blockSize];
+                }
+                decode(blocks.get(block), decodedXs, decodedYs, start + count);
+                System.arraycopy(decodedXs, start, xs, offset, count);
+                System.arraycopy(decodedYs, start, ys, offset, count);
+            }
+            from += count;
+            offset += count;
+        }
+    }
+
+    private long[] encode(float[] xs, float[] ys, int count) {
+        BitWriter out = writer;
+        out.reset();
+        int prevX = Float.floatToRawIntBits(xs[0]);
+        int prevY = Float.floatToRawIntBits(ys[0]);
+        out.write(prevX, 32);
+        out.write(prevY, 32);
+        int prevDelta = 0;
+        int prevLeading = -1, prevTrailing = 0;
+        for (int i = 1; i < count; i++) {
+            int x = Float.floatToRawIntBits(xs[i]);
+            int delta = x - prevX;
+            int dod = delta - prevDelta;
+            if (dod == 0) {
+                out.write(0, 1);
+            } else if (dod >= -64 && dod < 64) {
+                out.write(0x1, 2);
+                out.write(dod, 7);
+            } else if (dod >= -256 && dod < 256) {
+                out.write(0x3, 3);
+                out.write(dod, 9);
+            } else if (dod >= -2048 && dod < 2048) {
+                out.write(0x7, 4);
+                out.write(dod, 12);
+            } else {
+                out.write(0xF, 4);
+                out.write(dod, 32);
+            }
+            prevX = x;
+            prevDelta = delta;
+
+            int y = Float.floatToRawIntBits(ys[i]);
+            int xor = y ^ prevY;
+            if (xor == 0) {
+                out.write(0, 1);
+            } else {
+                int leading = Integer.numberOfLeadingZeros(xor);
+                int trailing = Integer.numberOfTrailingZeros(xor);
+                if (prevLeading >= 0 && leading >= prevLeading && trailing >= prevTrailing) {
+                    // Fits in the window of the previous value.
+                    out.write(0x1, 2);
+                    out.write(xor >>> prevTrailing, 32 - prevLeading - prevTrailing);
+                } else {
+                    int meaningful = 32 - leading - trailing;
+                    out.write(0x3, 2);
+                    out.write(leading, 5);
+                    out.write(meaningful - 1, 5);
+                    out.write(xor >>> trailing, meaningful);
+                    prevLeading = leading;
+                    prevTrailing = trailing;
+                }
+            }
+            prevY = y;
+        }
+        long[] words = new long[(out.bitCount + 63) >>> 6];
+        System.arraycopy(out.words, 0, words, 0, words.length);
+        return words;
+    }
+
+    /**
+     * Decodes the first {@code count} points of {@code block}.
+     */
+    private static void decode(long[] block, float[] xs, float[] ys, int count) {
+        BitReader in = new BitReader(block);
+        int x = in.read(32);
+        int y = in.read(32);
+        xs[0] = Float.intBitsToFloat(x);
+        ys[0] = Float.intBitsToFloat(y);
+        int delta = 0;
+        int leading = 0, trailing = 0;
+        for (int i = 1; i < count; i++) {
+            if (in.read(1) != 0) {
+                int dod;
+                if (in.read(1) == 0) {
+                    dod = signed(in.read(7), 7);
+                } else if (in.read(1) == 0) {
+                    dod = signed(in.read(9), 9);
+                } else if (in.read(1) == 0) {
+                    dod = signed(in.read(12), 12);
+                } else {
+                    dod = in.read(32);
+                }
+                delta += dod;
+            }
+            x += delta;
+            xs[i] = Float.intBitsToFloat(x);
+
+            if (in.read(1) != 0) {
+                if (in.read(1) != 0) {
+                    leading = in.read(5);
+                    trailing = 32 - leading - (in.read(5) + 1);
+                }
+                y ^= in.read(32 - leading - trailing) << trailing;
+            }
+            ys[i] = Float.intBitsToFloat(y);
+        }
+    }
+
+    private static int signed(int value, int bits) {
+        return (value << (32 - bits)) >> (32 - bits);
+    }
+
+    /**
+     * Packs values into longs, least significant bit first.
+     */
+    private static final class BitWriter {
+
+        long[] words = new long[64];
+        int bitCount;
+
+        void reset() {
+            for (int i = 0, used = (bitCount + 63) >>> 6; i < used; i++) {
+                words[i] = 0;
+            }
+            bitCount = 0;
+        }
+
+        /**
+         * Writes the low {@code bits} bits of {@code value}, 1 to 32 of them.
+         */
+        void write(int value, int bits) {
+            long v = value & (-1L >>> (64 - bits));
+            int word = bitCount >>> 6;
+            int offset = bitCount & 63;
+            if (word + 1 >= words.length) {
+                long[] grown = new long[words.length * 2];
+                System.arraycopy(words, 0, grown, 0, words.length);
+                words = grown;
+            }
+            words[word] |= v << offset;
+            if (offset + bits > 64) {
+                words[word + 1] |= v >>> (64 - offset);
+            }
+            bitCount += bits;
+        }
+
+    }
+
+    private static final class BitReader {
+
+        private final long[] words;
+        private int position;
+
+        BitReader(long[] words) {
+            this.words = words;
+        }
+
+        int read(int bits) {
+            int word = position >>> 6;
+            int offset = position & 63;
+            long v = words[word] >>> offset;
+            if (offset + bits > 64) {
+                v |= words[word + 1] << (64 - offset);
+            }
+            position += bits;
+            return (int) (v & (-1L >>> (64 - bits)));
+        }
+
+    }
+
+}
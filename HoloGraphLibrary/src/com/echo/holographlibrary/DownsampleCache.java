@@ -0,0 +1,98 @@
+/*
+ * 	   Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+
+package com.echo.holographlibrary;
+
+/**
+ * The indices of the points of a {@link Line} that survive downsampling,
+ * together with the inputs they were computed from. The indices point into the
+ * original line, so they can be reported back to listeners unchanged.
+ */
+final class DownsampleCache {
+
+    /**
+     * Internal mode for lines with a {@link MinMaxPyramid}, used whatever the
+     * graph's downsampling setting is.
+     */
+    static final int MODE_PYRAMID = 3;
+
+    int[] indices = new int[0];
+    int count;
+
+    private Line line;
+    private int modCount = -1;
+    private int mode;
+    private int columns;
+    private int from, to;
+    private float minX, maxX;
+
+    /**
+     * LTTB output only depends on the points in [from, to) and the column
+     * count, M4 output also depends on the X range mapped onto those columns.
+     */
+    boolean isValid(Line line, int from, int to, int mode, int columns, float minX, float maxX) {
+        if (this.line != line.getOrigin() || modCount != line.getModCount() || this.from != from || this.to != to
+                || this.mode != mode || this.columns != columns) {
+            return false;
+        }
+        return mode != LineGraph.DOWNSAMPLING_M4 || (this.minX == minX && this.maxX == maxX);
+    }
+
+    /**
+     * Downsamples [{@code from}, {@code to}) of {@code line}, whose X values
+     * must be sorted.
+     */
+    void update(Line line, int from, int to, int mode, int columns, float minX, float maxX) {
+        switch (mode) {
+            case LineGraph.DOWNSAMPLING_LTTB:
+                ensureCapacity(columns * 2);
+                count = Downsampler.lttb(line, from, to, columns * 2, indices);
+                break;
+            case LineGraph.DOWNSAMPLING_M4:
+                ensureCapacity(columns * 4);
+                count = Downsampler.m4(line, from, to, columns, minX, maxX, indices);
+                break;
+            case MODE_PYRAMID:
+                ensureCapacity(MinMaxPyramid.capacityFor(columns));
+                count = line.sample(from, to, columns, indices);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown downsampling mode: " + mode);
+        }
+        this.line = line.getOrigin();
+        this.modCount = line.getModCount();
+        this.from = from;
+        this.to = to;
+        this.mode = mode;
+        this.columns = columns;
+        this.minX = minX;
+        this.maxX = maxX;
+    }
+
+    int getMode() {
+        return mode;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (indices.length < capacity) {
+            indices = new int[capacity];
+        }
+    }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * 	   Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+
+package com.echo.holographlibrary;
+
+/**
+ * Reduces a {@link Line} to a subset of its point indices for rendering.
+ */
+final class Downsampler {
+
+    private Downsampler() { }
+
+    /**
+     * Largest-Triangle-Three-Buckets over the points in [{@code from}, {@code to}).
+     * Keeps the first and last point and, for each of the {@code threshold - 2}
+     * buckets in between, the point forming the largest triangle with the
+     * previously kept point and the average of the next bucket. Writes the
+     * kept indices to {@code out} in order and returns how many there are.
+     */
+    static int lttb(Line line, int from, int to, int threshold, int[] out) {
+        int size = to - from;
+        if (threshold >= size || threshold < 3) {
+            for (int i = 0; i < size; i++) {
+                out[i] = from + i;
+            }
+            return size;
+        }
+
+        double every = (double) (size - 2) / (threshold - 2);
+        int count = 0;
+        int a = from;
+        out[count++] = a;
+
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            int avgStart = from + (int) ((bucket + 1) * every) + 1;
+            int avgEnd = Math.min(from + (int) ((bucket + 2) * every) + 1, to);
+            float avgX = 0, avgY = 0;
+            for (int i = avgStart; i < avgEnd; i++) {
+                avgX += line.getX(i);
+                avgY += line.getY(i);
+            }
+            int avgLength = avgEnd - avgStart;
+            if (avgLength > 0) {
+                avgX /= avgLength;
+                avgY /= avgLength;
+            }
+
+            int rangeStart = from + (int) (bucket * every) + 1;
+            int rangeEnd = from + (int) ((bucket + 1) * every) + 1;
+            float ax = line.getX(a);
+            float ay = line.getY(a);
+            float maxArea = -1;
+            int next = rangeStart;
+            for (int i = rangeStart; i < rangeEnd; i++) {
+                float area = Math.abs((ax - avgX) * (line.getY(i) - ay) - (ax - line.getX(i)) * (avgY - ay));
+                if (area > maxArea) {
+                    maxArea = area;
+                    next = i;
+                }
+            }
+            out[count++] = next;
+            a = next;
+        }
+
+        out[count++] = to - 1;
+        return count;
+    }
+
+    /**
+     * M4 aggregation over the points in [{@code from}, {@code to}). For every
+     * pixel column keeps the first, last, minimum and maximum point, which
+     * rasterizes the same as drawing every point of an X-sorted line.
+     * {@code out} must hold at least {@code 4 * columns} entries; it is used as
+     * the per-column scratch space and then compacted in place, so no memory
+     * is allocated. Returns the number of indices kept.
+     */
+    static int m4(Line line, int from, int to, int columns, float minX, float maxX, int[] out) {
+        for (int i = 0; i < columns * 4; i++) {
+            out[i] = -1;
+        }
+
+        float scale = maxX > minX ? columns / (maxX - minX) : 0;
+        for (int i = from; i < to; i++) {
+            int column = (int) ((line.getX(i) - minX) * scale);
+            if (column < 0) column = 0;
+            if (column >= columns) column = columns - 1;
+            int slot = column * 4;
+            if (out[slot] == -1) {
+                out[slot] = i;
+                out[slot + 1] = i;
+                out[slot + 2] = i;
+            } else {
+                float y = line.getY(i);
+                if (y < line.getY(out[slot + 1])) out[slot + 1] = i;
+                if (y > line.getY(out[slot + 2])) out[slot + 2] = i;
+            }
+            out[slot + 3] = i;
+        }
+
+        int count = 0;
+        for (int column = 0; column < columns; column++) {
+            int slot = column * 4;
+            int first = out[slot];
+            if (first == -1) continue;
+            count = emit(out, count, first, out[slot + 1], out[slot + 2], out[slot + 3]);
+        }
+        return count;
+    }
+
+    /**
+     * Appends the first, min, max and last index of one bucket to {@code out}
+     * in index order, skipping duplicates. {@code min} and {@code max} must lie
+     * between {@code first} and {@code last}. Returns the new count.
+     */
+    static int emit(int[] out, int count, int first, int min, int max, int last) {
+        int low = Math.min(min, max);
+        int high = Math.max(min, max);
+        out[count++] = first;
+        if (low != first) out[count++] = low;
+        if (high != low && high != last) out[count++] = high;
+        if (last != first && last != low) out[count++] = last;
+        return count;
+    }
+
+}
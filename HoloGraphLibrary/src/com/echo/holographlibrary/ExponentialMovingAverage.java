@@ -0,0 +1,57 @@
+/*
+ * 	   Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+
+package com.echo.holographlibrary;
+
+/**
+ * An exponentially weighted mean of the Y values of a line, weighting each
+ * new value by {@code 2 / (period + 1)}. It starts at the first value.
+ */
+public class ExponentialMovingAverage extends LineOverlay {
+
+    private final float alpha;
+    private boolean started;
+    private float average;
+
+    public ExponentialMovingAverage(Line source, int period) {
+        super(source, 1);
+        if (period < 1) {
+            throw new IllegalArgumentException("period must be positive: " + period);
+        }
+        this.alpha = 2f / (period + 1);
+        attach();
+    }
+
+    @Override
+    void reset() {
+        started = false;
+    }
+
+    @Override
+    void add(float y, float[] out) {
+        if (started) {
+            average += alpha * (y - average);
+        } else {
+            average = y;
+            started = true;
+        }
+        out[0] = average;
+    }
+
+}
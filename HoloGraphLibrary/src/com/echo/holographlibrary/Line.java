@@ -2,7 +2,7 @@
  * 	   Created by Daniel Nadeau
  * 	   daniel.nadeau01@gmail.com
  * 	   danielnadeau.blogspot.com
- * 
+ *
  * 	   Licensed to the Apache Software Foundation (ASF) under one
        or more contributor license agreements.  See the NOTICE file
        distributed with this work for additional information
@@ -25,11 +25,38 @@ package com.echo.holographlibrary;
 
 import java.util.ArrayList;
 
+/**
+ * A series of points stored in parallel primitive arrays. The arrays grow in
+ * chunks, so adding points does not allocate an object per sample. The min/max
+ * bounds are kept up to date on append and recomputed lazily after a point is
+ * changed or removed.
+ */
 public class Line {
 
-    private ArrayList<LinePoint> points = new ArrayList<LinePoint>();
+    private static final int CHUNK_SIZE = 256;
+
+    private float[] xs = new float[0];
+    private float[] ys = new float[0];
+    private String[] labels;
+    private int size;
     private int color;
     private boolean showPoints = true;
+    private float minX, maxX, minY, maxY;
+    private boolean boundsDirty = false;
+    private boolean sortedX = true;
+    private boolean sortedXDirty = false;
+    private int modCount = 0;
+    private int rewriteCount = 0;
+    private int removalCount = 0;
+    // The first sharedSize points of xs, ys and labels are also read by
+    // lastSnapshot, so they are copied before being rewritten.
+    private int sharedSize = 0;
+    private Line lastSnapshot;
+    private Line origin;
+    private ArrayList<OnLineChangedListener> listeners;
+
+    private MinMaxPyramid pyramid;
+    private boolean levelOfDetail;
 
 
     public int getColor() {
@@ -40,24 +67,255 @@ public class Line {
         this.color = color;
     }
 
+    /**
+     * Returns a new list of {@link LinePoint} views over this line. Changing a
+     * point writes through to the line, but adding to or removing from the
+     * returned list does not. Removing any point from the line, including
+     * {@link #clear()}, shifts the indices the views are bound to, so every
+     * view obtained before then throws IllegalStateException when used.
+     */
     public ArrayList<LinePoint> getPoints() {
+        int size = getSize();
+        ArrayList<LinePoint> points = new ArrayList<LinePoint>(size);
+        for (int i = 0; i < size; i++) {
+            points.add(new LinePoint(this, i));
+        }
         return points;
     }
 
+    /**
+     * Replaces every point with the values of {@code points}, which are then
+     * bound to the line as {@link #addPoint(LinePoint)} binds them. The list
+     * may hold views over this line, such as the one {@link #getPoints()}
+     * returns.
+     */
     public void setPoints(ArrayList<LinePoint> points) {
-        this.points = points;
+        // Read every value before clear() leaves views over this line pointing
+        // past the end.
+        int count = points.size();
+        float[] xs = new float[count];
+        float[] ys = new float[count];
+        String[] labels = null;
+        for (int i = 0; i < count; i++) {
+            LinePoint point = points.get(i);
+            xs[i] = point.getX();
+            ys[i] = point.getY();
+            String label = point.getLabel_string();
+            if (label != null) {
+                if (labels == null) {
+                    labels = new String[count];
+                }
+                labels[i] = label;
+            }
+        }
+        clear();
+        addPoints(xs, ys, 0, count);
+        // Subclasses that hold a bounded window may have kept only the tail.
+        int offset = getSize() - count;
+        for (int i = Math.max(0, -offset); i < count; i++) {
+            if (labels != null && labels[i] != null) {
+                setLabel(offset + i, labels[i]);
+            }
+            points.get(i).attach(this, offset + i);
+        }
     }
 
+    /**
+     * Replaces every point with the {@code xs.length} points read from
+     * {@code xs} and {@code ys}, in one pass.
+     */
+    public void setPoints(float[] xs, float[] ys) {
+        if (xs.length != ys.length) {
+            throw new IllegalArgumentException("xs and ys differ in length: " + xs.length + " != " + ys.length);
+        }
+        clear();
+        addPoints(xs, ys, 0, xs.length);
+    }
+
+    /**
+     * Appends the values of {@code point} and binds it to the new slot, so
+     * changing it afterwards writes through to the line. Like the views from
+     * {@link #getPoints()}, it throws IllegalStateException once any point is
+     * removed from the line.
+     */
     public void addPoint(LinePoint point) {
-        points.add(point);
+        String label = point.getLabel_string();
+        addPoint(point.getX(), point.getY());
+        if (label != null) {
+            setLabel(getSize() - 1, label);
+        }
+        point.attach(this, getSize() - 1);
+    }
+
+    public void addPoint(float x, float y) {
+        if (size > 0 && x < xs[size - 1]) {
+            sortedX = false;
+        }
+        ensureCapacity(size + 1);
+        xs[size] = x;
+        ys[size] = y;
+        size++;
+        modCount++;
+        includeInBounds(x, y);
+        if (pyramid != null) {
+            pyramid.append(this, size - 1);
+        }
+        firePointsAppended(size - 1, 1);
+    }
+
+    /**
+     * Appends {@code len} points read from {@code xs} and {@code ys}
+     * starting at {@code off}.
+     */
+    public void addPoints(float[] xs, float[] ys, int off, int len) {
+        if (off < 0 || len < 0 || off + len > xs.length || off + len > ys.length) {
+            throw new IndexOutOfBoundsException("off=" + off + ", len=" + len);
+        }
+        ensureCapacity(size + len);
+        System.arraycopy(xs, off, this.xs, size, len);
+        System.arraycopy(ys, off, this.ys, size, len);
+        modCount++;
+        for (int i = off; i < off + len; i++) {
+            if (size > 0 && xs[i] < this.xs[size - 1]) {
+                sortedX = false;
+            }
+            size++;
+            includeInBounds(xs[i], ys[i]);
+            if (pyramid != null) {
+                pyramid.append(this, size - 1);
+            }
+        }
+        if (len > 0) {
+            firePointsAppended(size - len, len);
+        }
+    }
+
+    /**
+     * Removes the point at {@code index}. Points after it shift down by one,
+     * and every {@link LinePoint} bound to this line stops being usable.
+     */
+    public void removePoint(int index) {
+        checkIndex(index);
+        if (index < sharedSize) {
+            unshare();
+        }
+        int moved = size - index - 1;
+        System.arraycopy(xs, index + 1, xs, index, moved);
+        System.arraycopy(ys, index + 1, ys, index, moved);
+        if (labels != null) {
+            System.arraycopy(labels, index + 1, labels, index, moved);
+            labels[size - 1] = null;
+        }
+        size--;
+        modCount++;
+        rewriteCount = modCount;
+        boundsDirty = true;
+        if (pyramid != null) {
+            pyramid.invalidate();
+        }
+        if (!sortedX) {
+            sortedXDirty = true;
+        }
+        firePointsRemoved(index, 1);
     }
 
     public LinePoint getPoint(int index) {
-        return points.get(index);
+        if (index < 0 || index >= getSize()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + getSize());
+        }
+        return new LinePoint(this, index);
+    }
+
+    public float getX(int index) {
+        checkIndex(index);
+        return xs[index];
+    }
+
+    public float getY(int index) {
+        checkIndex(index);
+        return ys[index];
+    }
+
+    public void setX(int index, float x) {
+        checkIndex(index);
+        if (index < sharedSize) {
+            unshare();
+        }
+        if (xs[index] == minX || xs[index] == maxX) {
+            boundsDirty = true;
+        }
+        xs[index] = x;
+        modCount++;
+        rewriteCount = modCount;
+        sortedXDirty = true;
+        includeInBounds(x, ys[index]);
+        firePointUpdated(index);
+    }
+
+    public void setY(int index, float y) {
+        checkIndex(index);
+        if (index < sharedSize) {
+            unshare();
+        }
+        if (ys[index] == minY || ys[index] == maxY) {
+            boundsDirty = true;
+        }
+        ys[index] = y;
+        modCount++;
+        rewriteCount = modCount;
+        includeInBounds(xs[index], y);
+        if (pyramid != null) {
+            pyramid.invalidate();
+        }
+        firePointUpdated(index);
+    }
+
+    public String getLabel(int index) {
+        checkIndex(index);
+        return labels == null ? null : labels[index];
+    }
+
+    public void setLabel(int index, String label) {
+        checkIndex(index);
+        if (index < sharedSize) {
+            unshare();
+        }
+        if (labels == null) {
+            if (label == null) return;
+            labels = new String[xs.length];
+        }
+        labels[index] = label;
+        // Labels are not counted as modifications.
+        lastSnapshot = null;
+        firePointUpdated(index);
+    }
+
+    public void clear() {
+        int removed = size;
+        if (sharedSize > 0) {
+            // The snapshot keeps the old arrays; appends start on new ones.
+            xs = new float[0];
+            ys = new float[0];
+            sharedSize = 0;
+            lastSnapshot = null;
+        }
+        size = 0;
+        modCount++;
+        rewriteCount = modCount;
+        labels = null;
+        boundsDirty = false;
+        sortedX = true;
+        sortedXDirty = false;
+        if (pyramid != null) {
+            pyramid.invalidate();
+        }
+        if (removed > 0) {
+            firePointsRemoved(0, removed);
+        }
     }
 
     public int getSize() {
-        return points.size();
+        return size;
     }
 
     public boolean isShowingPoints() {
@@ -68,4 +326,351 @@ public class Line {
         this.showPoints = showPoints;
     }
 
+    /**
+     * Registers {@code listener} to hear about every point appended, changed
+     * or removed, on the thread that makes the change.
+     */
+    public void addOnLineChangedListener(OnLineChangedListener listener) {
+        if (listeners == null) {
+            listeners = new ArrayList<OnLineChangedListener>(1);
+        }
+        listeners.add(listener);
+    }
+
+    public void removeOnLineChangedListener(OnLineChangedListener listener) {
+        if (listeners != null) {
+            listeners.remove(listener);
+        }
+    }
+
+    /**
+     * Keeps a min/max pyramid over the points so that LineGraph can draw a
+     * long line from a few points per column without scanning all of them.
+     * Appending stays cheap; changing or removing a point makes the next draw
+     * rebuild the pyramid. Costs two ints per four points.
+     */
+    public void setLevelOfDetail(boolean enabled) {
+        if (enabled == levelOfDetail) return;
+        levelOfDetail = enabled;
+        if (enabled && pyramid == null) {
+            pyramid = newPyramid();
+        }
+        modCount++;
+    }
+
+    public boolean isLevelOfDetailEnabled() {
+        return levelOfDetail;
+    }
+
+    public float getMinX() {
+        updateBounds();
+        return minX;
+    }
+
+    public float getMaxX() {
+        updateBounds();
+        return maxX;
+    }
+
+    public float getMinY() {
+        updateBounds();
+        return minY;
+    }
+
+    public float getMaxY() {
+        updateBounds();
+        return maxY;
+    }
+
+    /**
+     * Whether the X values never decrease from one point to the next. Only
+     * sorted lines can be culled to the visible range with a binary search.
+     */
+    public boolean isSortedX() {
+        if (sortedXDirty) {
+            sortedXDirty = false;
+            sortedX = true;
+            for (int i = 1; i < size; i++) {
+                if (xs[i] < xs[i - 1]) {
+                    sortedX = false;
+                    break;
+                }
+            }
+        }
+        return sortedX;
+    }
+
+    /**
+     * Index of the first point whose X is not less than {@code x}, or
+     * {@link #getSize()} if there is none. Only meaningful if
+     * {@link #isSortedX()}.
+     */
+    int lowerBound(float x) {
+        int low = 0, high = getSize();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getX(mid) < x) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Index of the first point whose X is greater than {@code x}, or
+     * {@link #getSize()} if there is none. Only meaningful if
+     * {@link #isSortedX()}.
+     */
+    int upperBound(float x) {
+        int low = 0, high = getSize();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (getX(mid) <= x) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Incremented on every change to the points, so caches derived from them
+     * can tell when they are stale.
+     */
+    int getModCount() {
+        return modCount;
+    }
+
+    /**
+     * The line this one is a snapshot of, or this line. Caches derived from
+     * the points key on it, so they carry over from one snapshot to the next.
+     */
+    Line getOrigin() {
+        return origin != null ? origin : this;
+    }
+
+    MinMaxPyramid getPyramid() {
+        return pyramid;
+    }
+
+    MinMaxPyramid newPyramid() {
+        return new MinMaxPyramid();
+    }
+
+    /**
+     * Samples [{@code from}, {@code to}) for {@code columns} columns from the
+     * pyramid; see {@link MinMaxPyramid#sample}.
+     */
+    int sample(int from, int to, int columns, int[] out) {
+        return pyramid.sample(this, from, to, columns, out);
+    }
+
+    /**
+     * Writes the lowest and highest Y of the points in [{@code from},
+     * {@code to}) to {@code out}. The first query builds the min/max pyramid
+     * if level of detail is off, and later appends keep it up to date, so
+     * each query is O(log n).
+     */
+    void getYRange(int from, int to, float[] out) {
+        if (pyramid == null) {
+            pyramid = newPyramid();
+        }
+        pyramid.range(this, from, to, out);
+    }
+
+    /**
+     * Returns a copy of the points, labels and drawing options, with caches of
+     * its own, that can be drawn on another thread while this line keeps
+     * changing. The last snapshot is returned again if nothing changed since.
+     * <p>
+     * A plain Line does not copy its points: appends only write past the
+     * snapshot's end, or into new arrays once these are full, so the snapshot
+     * shares the arrays until a point it reads is changed or removed, which
+     * copies them once. Subclasses that keep their points elsewhere are
+     * copied with {@link #copyPoints(float[], float[])}.
+     */
+    Line snapshot() {
+        Line last = lastSnapshot;
+        if (last != null && last.modCount == getModCount() && last.color == color
+                && last.showPoints == showPoints && last.levelOfDetail == levelOfDetail) {
+            return last;
+        }
+        Line copy = new Line();
+        int size = getSize();
+        if (getClass() == Line.class) {
+            copy.xs = xs;
+            copy.ys = ys;
+            copy.labels = labels;
+            sharedSize = size;
+        } else {
+            copy.ensureCapacity(size);
+            copyPoints(copy.xs, copy.ys);
+            if (hasLabels()) {
+                copy.labels = new String[copy.xs.length];
+                System.arraycopy(labels, 0, copy.labels, 0, size);
+            }
+        }
+        copy.size = size;
+        copy.boundsDirty = true;
+        copy.sortedX = isSortedX();
+        copy.color = color;
+        copy.showPoints = showPoints;
+        copy.setLevelOfDetail(levelOfDetail);
+        copy.origin = getOrigin();
+        copy.modCount = getModCount();
+        copy.rewriteCount = getRewriteCount();
+        lastSnapshot = copy;
+        return copy;
+    }
+
+    /**
+     * Gives this line arrays of its own again before it rewrites points the
+     * last snapshot reads.
+     */
+    private void unshare() {
+        float[] newXs = new float[xs.length];
+        float[] newYs = new float[ys.length];
+        System.arraycopy(xs, 0, newXs, 0, size);
+        System.arraycopy(ys, 0, newYs, 0, size);
+        xs = newXs;
+        ys = newYs;
+        if (labels != null) {
+            String[] newLabels = new String[labels.length];
+            System.arraycopy(labels, 0, newLabels, 0, size);
+            labels = newLabels;
+        }
+        sharedSize = 0;
+        lastSnapshot = null;
+    }
+
+    /**
+     * Copies the X and Y values, oldest first, to the start of {@code xs} and
+     * {@code ys}.
+     */
+    void copyPoints(float[] xs, float[] ys) {
+        System.arraycopy(this.xs, 0, xs, 0, size);
+        System.arraycopy(this.ys, 0, ys, 0, size);
+    }
+
+    /**
+     * The mod count of the last change that was not an append. Anything
+     * derived from the points at or after it can be extended with the points
+     * appended since, instead of being rebuilt.
+     */
+    int getRewriteCount() {
+        return rewriteCount;
+    }
+
+    void firePointsAppended(int from, int count) {
+        if (listeners == null) return;
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).onPointsAppended(this, from, count);
+        }
+    }
+
+    void firePointUpdated(int index) {
+        if (listeners == null) return;
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).onPointUpdated(this, index);
+        }
+    }
+
+    /**
+     * Incremented whenever points are removed and the indices after them
+     * shift, so {@link LinePoint} views can tell that their index is stale.
+     */
+    int getRemovalCount() {
+        return removalCount;
+    }
+
+    void firePointsRemoved(int from, int count) {
+        removalCount++;
+        if (listeners == null) return;
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).onPointsRemoved(this, from, count);
+        }
+    }
+
+    boolean hasLabels() {
+        return labels != null;
+    }
+
+    private void includeInBounds(float x, float y) {
+        if (boundsDirty) return;
+        if (size == 1) {
+            minX = maxX = x;
+            minY = maxY = y;
+            return;
+        }
+        if (x < minX) minX = x;
+        if (x > maxX) maxX = x;
+        if (y < minY) minY = y;
+        if (y > maxY) maxY = y;
+    }
+
+    private void updateBounds() {
+        if (!boundsDirty) return;
+        boundsDirty = false;
+        if (size == 0) return;
+        minX = maxX = xs[0];
+        minY = maxY = ys[0];
+        for (int i = 1; i < size; i++) {
+            float x = xs[i], y = ys[i];
+            if (x < minX) minX = x;
+            if (x > maxX) maxX = x;
+            if (y < minY) minY = y;
+            if (y > maxY) maxY = y;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= xs.length) return;
+        int newCapacity = Math.max(capacity, xs.length + Math.max(CHUNK_SIZE, xs.length >> 1));
+        float[] newXs = new float[newCapacity];
+        float[] newYs = new float[newCapacity];
+        System.arraycopy(xs, 0, newXs, 0, size);
+        System.arraycopy(ys, 0, newYs, 0, size);
+        xs = newXs;
+        ys = newYs;
+        if (labels != null) {
+            String[] newLabels = new String[newCapacity];
+            System.arraycopy(labels, 0, newLabels, 0, size);
+            labels = newLabels;
+        }
+        // Only the snapshot holds the old arrays now.
+        sharedSize = 0;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    /**
+     * Told about every change to the points of a {@link Line}, so a view can
+     * update what it derived from them instead of recomputing everything.
+     */
+    public interface OnLineChangedListener {
+
+        /**
+         * {@code count} points were appended, starting at index {@code from}.
+         */
+        void onPointsAppended(Line line, int from, int count);
+
+        /**
+         * The X, Y or label of the point at {@code index} changed.
+         */
+        void onPointUpdated(Line line, int index);
+
+        /**
+         * {@code count} points starting at {@code from} were removed; the points
+         * after them moved down.
+         */
+        void onPointsRemoved(Line line, int from, int count);
+    }
+
 }
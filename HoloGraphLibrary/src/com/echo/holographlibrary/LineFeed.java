@@ -0,0 +1,152 @@
+/*
+ * 	   Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+
+package com.echo.holographlibrary;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Hands points from one producer thread to a {@link Line} drawn on the UI
+ * thread without locks. The producer writes into a ring buffer and then
+ * publishes its write index; {@link LineGraph} drains everything published so
+ * far into the line at the start of its next frame. Only the first batch
+ * after a drain asks for a frame, so a fast producer costs one frame, not
+ * one message per batch.
+ * <p>
+ * Each feed supports a single producer thread. Register it with
+ * {@link LineGraph#addFeed(LineFeed)}; the line must not be changed from
+ * other threads.
+ */
+public final class LineFeed {
+
+    private final Line line;
+    private final float[] xs;
+    private final float[] ys;
+    private final int mask;
+    // Written by the producer only.
+    private volatile long writeIndex;
+    // Written by the consumer only.
+    private volatile long readIndex;
+    private final AtomicBoolean pending = new AtomicBoolean();
+    private volatile LineGraph target;
+
+    /**
+     * Creates a feed into {@code line} that holds up to {@code capacity}
+     * points between frames, rounded up to a power of two.
+     */
+    public LineFeed(Line line, int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity out of range: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.line = line;
+        this.xs = new float[size];
+        this.ys = new float[size];
+        this.mask = size - 1;
+    }
+
+    public Line getLine() {
+        return line;
+    }
+
+    public int getCapacity() {
+        return xs.length;
+    }
+
+    /**
+     * Queues one point. Returns false, dropping the point, if the buffer is
+     * full because the UI thread has not drawn for a while.
+     */
+    public boolean offer(float x, float y) {
+        long write = writeIndex;
+        if (write - readIndex == xs.length) {
+            return false;
+        }
+        int slot = (int) write & mask;
+        xs[slot] = x;
+        ys[slot] = y;
+        writeIndex = write + 1;
+        signal();
+        return true;
+    }
+
+    /**
+     * Queues up to {@code len} points read from {@code xs} and {@code ys}
+     * starting at {@code off}, and returns how many fit.
+     */
+    public int offer(float[] xs, float[] ys, int off, int len) {
+        if (off < 0 || len < 0 || off + len > xs.length || off + len > ys.length) {
+            throw new IndexOutOfBoundsException("off=" + off + ", len=" + len);
+        }
+        long write = writeIndex;
+        int count = (int) Math.min(len, this.xs.length - (write - readIndex));
+        if (count == 0) return 0;
+        int slot = (int) write & mask;
+        int first = Math.min(count, this.xs.length - slot);
+        System.arraycopy(xs, off, this.xs, slot, first);
+        System.arraycopy(ys, off, this.ys, slot, first);
+        System.arraycopy(xs, off + first, this.xs, 0, count - first);
+        System.arraycopy(ys, off + first, this.ys, 0, count - first);
+        writeIndex = write + count;
+        signal();
+        return count;
+    }
+
+    /**
+     * Points published but not yet drained into the line.
+     */
+    public int getPendingCount() {
+        return (int) (writeIndex - readIndex);
+    }
+
+    void setTarget(LineGraph target) {
+        this.target = target;
+    }
+
+    /**
+     * Appends every published point to the line and returns how many there
+     * were. Must be called on the thread that draws the line.
+     */
+    int drain() {
+        // Clear first, so a batch published while draining asks for another frame.
+        pending.set(false);
+        long read = readIndex;
+        int count = (int) (writeIndex - read);
+        if (count == 0) return 0;
+        int slot = (int) read & mask;
+        int first = Math.min(count, xs.length - slot);
+        line.addPoints(xs, ys, slot, first);
+        if (count > first) {
+            line.addPoints(xs, ys, 0, count - first);
+        }
+        readIndex = read + count;
+        return count;
+    }
+
+    private void signal() {
+        LineGraph graph = target;
+        if (graph != null && !pending.getAndSet(true)) {
+            graph.requestFrame();
+        }
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * 	   Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+
+package com.echo.holographlibrary;
+
+/**
+ * The pixel geometry of a {@link Line} as last drawn in one slot of a
+ * {@link LineGraph}: the projected points, the original index of each of them
+ * and the segment vertices for {@link android.graphics.Canvas#drawLines}. It
+ * is only reprojected when the line or the projection changes, so rebuilding
+ * the graph after another line changed reuses it. The graph owns it rather
+ * than the line, so several graphs can show the same line.
+ */
+final class LineGeometry {
+
+    float[] points = new float[0];
+    int[] indices = new int[0];
+    float[] vertices = new float[0];
+    int pointCount;
+    int vertexCount;
+
+    private Line line;
+    private int modCount = -1;
+    private int downsampling = -1;
+    private int from, to;
+    private float minX, maxX, minY, maxY;
+    private float left, bottom, width, height;
+
+    /**
+     * Projects the points of {@code line} listed by {@code sampled}, or all of
+     * those in [{@code from}, {@code to}) if it is null, into the rectangle
+     * whose bottom-left corner is ({@code left}, {@code bottom}). Does nothing
+     * if the cached geometry was computed from the same inputs, and only
+     * projects the new points if the line was just appended to.
+     */
+    void project(Line line, int from, int to, DownsampleCache sampled, int downsampling,
+                 float minX, float maxX, float minY, float maxY,
+                 float left, float bottom, float width, float height) {
+        boolean sameMapping = this.line == line.getOrigin() && this.from == from && this.downsampling == downsampling
+                && this.minX == minX && this.maxX == maxX && this.minY == minY && this.maxY == maxY
+                && this.left == left && this.bottom == bottom && this.width == width && this.height == height;
+        if (sameMapping && modCount == line.getModCount() && this.to == to) {
+            return;
+        }
+
+        int count = sampled != null ? sampled.count : to - from;
+        // Points appended since the last projection land after the ones already
+        // projected, as long as nothing was rewritten and every point is drawn.
+        int start = 0;
+        if (sameMapping && sampled == null && modCount >= line.getRewriteCount()
+                && to >= this.to && pointCount == this.to - this.from) {
+            start = pointCount;
+        }
+        ensureCapacity(count, start);
+
+        float scaleX = width / (maxX - minX);
+        float scaleY = height / (maxY - minY);
+        int vertexCount = start > 0 ? this.vertexCount : 0;
+        if (start > 0 && start < count) {
+            // The old last point now starts a segment too.
+            vertices[vertexCount++] = points[(start - 1) * 2];
+            vertices[vertexCount++] = points[(start - 1) * 2 + 1];
+        }
+        for (int k = start; k < count; k++) {
+            int i = sampled != null ? sampled.indices[k] : from + k;
+            float x = left + (line.getX(i) - minX) * scaleX;
+            float y = bottom - (line.getY(i) - minY) * scaleY;
+            indices[k] = i;
+            points[k * 2] = x;
+            points[k * 2 + 1] = y;
+            if (k > 0) {
+                vertices[vertexCount++] = x;
+                vertices[vertexCount++] = y;
+            }
+            if (k < count - 1) {
+                vertices[vertexCount++] = x;
+                vertices[vertexCount++] = y;
+            }
+        }
+        this.pointCount = count;
+        this.vertexCount = vertexCount;
+
+        this.line = line.getOrigin();
+        this.modCount = line.getModCount();
+        this.from = from;
+        this.to = to;
+        this.downsampling = downsampling;
+        this.minX = minX;
+        this.maxX = maxX;
+        this.minY = minY;
+        this.maxY = maxY;
+        this.left = left;
+        this.bottom = bottom;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Makes room for {@code count} points, keeping the first {@code keep}.
+     */
+    private void ensureCapacity(int count, int keep) {
+        if (indices.length >= count) return;
+        int capacity = Math.max(count, indices.length + (indices.length >> 1));
+        int[] newIndices = new int[capacity];
+        float[] newPoints = new float[capacity * 2];
+        float[] newVertices = new float[Math.max(0, capacity - 1) * 4];
+        System.arraycopy(indices, 0, newIndices, 0, keep);
+        System.arraycopy(points, 0, newPoints, 0, keep * 2);
+        System.arraycopy(vertices, 0, newVertices, 0, Math.max(0, keep - 1) * 4);
+        indices = newIndices;
+        points = newPoints;
+        vertices = newVertices;
+    }
+
+}
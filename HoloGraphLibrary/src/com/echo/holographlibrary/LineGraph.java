@@ -27,30 +27,86 @@ import android.content.Context;
 import android.graphics.*;
 import android.graphics.Bitmap.Config;
 import android.graphics.Paint.Align;
-import android.graphics.Path.Direction;
 import android.util.AttributeSet;
 import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
 import android.view.View;
+import android.view.ViewConfiguration;
 
 import java.util.ArrayList;
+import java.util.List;
 
 public class LineGraph extends View {
 	
+	public static final int DOWNSAMPLING_NONE = 0;
+	public static final int DOWNSAMPLING_LTTB = 1;
+	public static final int DOWNSAMPLING_M4 = 2;
+	
 	private ArrayList<Line> lines = new ArrayList<Line>();
-	private Paint paint = new Paint();
+	private ArrayList<LineFeed> feeds = new ArrayList<LineFeed>();
+	private boolean attached = false;
+	private final UpdateScheduler scheduler = new UpdateScheduler(this);
+	private boolean drawing = false;
+	private final Line.OnLineChangedListener lineListener = new Line.OnLineChangedListener() {
+		@Override
+		public void onPointsAppended(Line line, int from, int count) {
+			if (!isOffscreen(line, from)) {
+				onLineChanged();
+			}
+		}
+		@Override
+		public void onPointUpdated(Line line, int index) {
+			onLineChanged();
+		}
+		@Override
+		public void onPointsRemoved(Line line, int from, int count) {
+			onLineChanged();
+		}
+	};
 	private Paint txtPaint = new Paint();
+	private Paint gridPaint = new Paint();
+	private Paint selectionPaint = new Paint();
 	private float minY = 0, minX = 0;
 	private float maxY = 0, maxX = 0;
 	private boolean isMaxYUserSet = false;
 	private int lineToFill = -1;
-	private int indexSelected = -1;
+	private int selectedLine = -1;
+	private int selectedMarker = -1;
+	private BackgroundRenderer renderer;
+	private DataFrame frame;
+	private DataFrame drawnFrame;
+	private DataFrame spareFrame;
 	private OnPointClickedListener listener;
 	private Bitmap fullImage;
+	private Canvas fullCanvas;
 	private boolean shouldUpdate = false;
     private boolean showMinAndMax = false;
     private boolean showHorizontalGrid = false;
 	private int gridColor = 0xffffffff;
 	private int labelSize = 10;
+	private int downsampling = DOWNSAMPLING_NONE;
+	private boolean autoScaleY = false;
+	private float xWindow = 0;
+	private boolean hasViewport = false;
+	private float viewportMinX, viewportMaxX;
+	private float drawnMinX, drawnMaxX;
+	private boolean viewportGestures = false;
+	private ScaleGestureDetector scaleDetector;
+	private int touchSlop;
+	private float downX, lastPanX;
+	private boolean gesturing = false;
+	private boolean chromeDirty = true;
+	private float[] gridVertices = new float[4 * 11];
+	private int gridVertexCount = 0;
+	private float sidePadding = 10, bottomPadding = 10;
+	private float usableWidth, usableHeight;
+	private String maxLabel = "", minLabel = "";
+	private Rect dirty = new Rect();
+	private Bitmap hatchTile;
+	
+	private static final float TOUCH_RADIUS = 30;
+	private static final int HATCH_SPACING = 20;
+	private static final int MIN_SPAN_ULPS = 64;
 	
 	public LineGraph(Context context){
 		this(context,null);
@@ -60,14 +116,30 @@ public class LineGraph extends View {
 		txtPaint.setColor(0xffffffff);
 		txtPaint.setTextSize(20);
 		txtPaint.setAntiAlias(true);
+		gridPaint.setAntiAlias(true);
+		selectionPaint.setColor(Color.parseColor("#33B5E5"));
+		selectionPaint.setAlpha(100);
+		selectionPaint.setAntiAlias(true);
+		touchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
+		scaleDetector = new ScaleGestureDetector(context, new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+			@Override
+			public boolean onScale(ScaleGestureDetector detector) {
+				zoomBy(detector.getScaleFactor(), detector.getFocusX());
+				return true;
+			}
+		});
 	}
 	public void setGridColor(int color)
 	{
 		gridColor = color;
+		chromeDirty = true;
+		postInvalidate();
 	}
 	public void showHorizontalGrid(boolean show)
 	{
 		showHorizontalGrid = show;
+		chromeDirty = true;
+		postInvalidate();
 	}
 	public void showMinAndMaxValues(boolean show)
 	{
@@ -81,41 +153,189 @@ public class LineGraph extends View {
 	{
 		txtPaint.setTextSize(s);
 	}
+	/**
+	 * Reduces lines with more points than the view has pixel columns before
+	 * drawing them. {@link #DOWNSAMPLING_LTTB} keeps the visual shape with about
+	 * two points per column, {@link #DOWNSAMPLING_M4} keeps the first, last, min
+	 * and max point of every column so spikes are never dropped.
+	 * {@link OnPointClickedListener} still receives indices into the original
+	 * lines. Lines whose X values are not sorted are always drawn in full.
+	 */
+	public void setDownsampling(int mode){
+		this.downsampling = mode;
+		update();
+	}
+	public int getDownsampling(){
+		return downsampling;
+	}
+	/**
+	 * Shows only the last {@code width} units of X, ending at the newest point,
+	 * so the graph follows a {@link StreamingLine} as it is fed. Pass 0 to fit
+	 * all the data again.
+	 */
+	public void setXWindow(float width){
+		this.xWindow = width;
+		update();
+	}
+	public float getXWindow(){
+		return xWindow;
+	}
+	/**
+	 * Shows only the X range [{@code minX}, {@code maxX}]. Points outside it are
+	 * not drawn at all on lines whose X values are sorted, so the cost of a
+	 * frame depends on the visible points only.
+	 */
+	public void setViewport(float minX, float maxX){
+		if (!(maxX > minX)) {
+			throw new IllegalArgumentException("maxX must be greater than minX");
+		}
+		this.viewportMinX = minX;
+		this.viewportMaxX = maxX;
+		this.hasViewport = true;
+		update();
+	}
+	public void resetViewport(){
+		this.hasViewport = false;
+		update();
+	}
+	public boolean hasViewport(){
+		return hasViewport;
+	}
+	public float getViewportMinX(){
+		return hasViewport ? viewportMinX : drawnMinX;
+	}
+	public float getViewportMaxX(){
+		return hasViewport ? viewportMaxX : drawnMaxX;
+	}
+	/**
+	 * Lets the user pinch to zoom and drag to pan the viewport. Taps on points
+	 * keep working; a touch only becomes a pan once it moves past the touch slop.
+	 */
+	public void setViewportGesturesEnabled(boolean enabled){
+		this.viewportGestures = enabled;
+	}
+	public boolean isViewportGesturesEnabled(){
+		return viewportGestures;
+	}
+	/**
+	 * Fits the Y axis to the points inside the viewport or X window instead of
+	 * to every point, so the visible part of the lines fills the height while
+	 * panning. Has no effect after {@link #setRangeY(float, float)}.
+	 */
+	public void setAutoScaleY(boolean autoScale){
+		this.autoScaleY = autoScale;
+		update();
+	}
+	public boolean isAutoScaleY(){
+		return autoScaleY;
+	}
+	/**
+	 * Returns the lowest and highest Y, as {@code {min, max}}, of the points of
+	 * {@code line} whose X lies in [{@code fromX}, {@code toX}], or null if
+	 * there are none. Takes O(log n) on lines whose X values are sorted.
+	 */
+	public float[] getYRange(Line line, float fromX, float toX){
+		float[] range = new float[2];
+		return findYRange(line, fromX, toX, range) ? range : null;
+	}
 	public void setMinY(float minY){
 		this.minY = minY;
 	}
 	
+	/**
+	 * Redraws the lines at the next frame. Calls made before that frame are
+	 * coalesced into one redraw, and {@link #setMaxFrameRate(int)} can space
+	 * redraws out further.
+	 */
 	public void update()
 	{
 		shouldUpdate = true;
-		postInvalidate();
+		scheduler.schedule();
+	}
+	/**
+	 * Redraws at most {@code framesPerSecond} times a second however often the
+	 * data changes, so graphs that are not in focus can refresh slowly. 0, the
+	 * default, redraws at the display rate.
+	 */
+	public void setMaxFrameRate(int framesPerSecond){
+		scheduler.setMaxFrameRate(framesPerSecond);
+	}
+	public int getMaxFrameRate(){
+		return scheduler.getMaxFrameRate();
+	}
+	/**
+	 * Starts a batch of changes: {@link #update()} and the setters that call it
+	 * only record that the graph needs redrawing until the matching
+	 * {@link #endUpdate()}, which redraws once. Batches nest. Call both on the
+	 * UI thread.
+	 */
+	public void beginUpdate(){
+		scheduler.beginBatch();
+	}
+	public void endUpdate(){
+		scheduler.endBatch();
+	}
+	void requestFrame(){
+		scheduler.schedule();
 	}
 	public void removeAllLines(){
 		while (lines.size() > 0){
-			lines.remove(0);
+			lines.remove(0).removeOnLineChangedListener(lineListener);
 		}
-		shouldUpdate = true;
-		postInvalidate();
+		onLineSetChanged();
 	}
 	
+	/**
+	 * Drains {@code feed} into its line at the start of every frame, so points
+	 * can be published from another thread without posting to the UI thread.
+	 * Add the feed's line with {@link #addLine(Line)} as well.
+	 */
+	public void addFeed(LineFeed feed) {
+		feeds.add(feed);
+		if (attached) {
+			feed.setTarget(this);
+		}
+		requestFrame();
+	}
+	public void removeFeed(LineFeed feed) {
+		if (feeds.remove(feed)) {
+			feed.setTarget(null);
+		}
+	}
+	
+	/**
+	 * Adds {@code line} to the graph. The graph redraws by itself when points
+	 * are added to, changed on or removed from the line while it is attached
+	 * to a window.
+	 */
 	public void addLine(Line line) {
 		lines.add(line);
-		shouldUpdate = true;
-		postInvalidate();
+		if (attached) {
+			line.addOnLineChangedListener(lineListener);
+		}
+		onLineSetChanged();
 	}
 	public ArrayList<Line> getLines() {
 		return lines;
 	}
 	public void setLineToFill(int indexOfLine) {
 		this.lineToFill = indexOfLine;
-		shouldUpdate = true;
-		postInvalidate();
+		update();
 	}
 	public int getLineToFill(){
 		return lineToFill;
 	}
 	public void setLines(ArrayList<Line> lines) {
+		for (Line line : this.lines){
+			line.removeOnLineChangedListener(lineListener);
+		}
 		this.lines = lines;
+		if (attached) {
+			for (Line line : lines){
+				line.addOnLineChangedListener(lineListener);
+			}
+		}
+		onLineSetChanged();
 	}
 	public Line getLine(int index) {
 		return lines.get(index);
@@ -133,13 +353,11 @@ public class LineGraph extends View {
 		if (isMaxYUserSet){
 			return maxY;
 		} else {
-			maxY = lines.get(0).getPoint(0).getY();
+			boolean first = true;
 			for (Line line : lines){
-				for (LinePoint point : line.getPoints()){
-					if (point.getY() > maxY){
-						maxY = point.getY();
-					}
-				}
+				if (line.getSize() == 0) continue;
+				if (first || line.getMaxY() > maxY) maxY = line.getMaxY();
+				first = false;
 			}
 			return maxY;
 		}
@@ -149,269 +367,691 @@ public class LineGraph extends View {
 		if (isMaxYUserSet){
 			return minY;
 		} else {
-			float min = lines.get(0).getPoint(0).getY();
+			boolean first = true;
 			for (Line line : lines){
-				for (LinePoint point : line.getPoints()){
-					if (point.getY() < min) min = point.getY();
-				}
+				if (line.getSize() == 0) continue;
+				if (first || line.getMinY() < minY) minY = line.getMinY();
+				first = false;
 			}
-			minY = min;
 			return minY;
 		}
 	}
 	public float getMaxX(){
-		float max = lines.get(0).getPoint(0).getX();
+		boolean first = true;
 		for (Line line : lines){
-			for (LinePoint point : line.getPoints()){
-				if (point.getX() > max) max = point.getX();
-			}
+			if (line.getSize() == 0) continue;
+			if (first || line.getMaxX() > maxX) maxX = line.getMaxX();
+			first = false;
 		}
-		maxX = max;
 		return maxX;
 		
 	}
 	public float getMinX(){
-		float max = lines.get(0).getPoint(0).getX();
+		boolean first = true;
 		for (Line line : lines){
-			for (LinePoint point : line.getPoints()){
-				if (point.getX() < max) max = point.getX();
-			}
+			if (line.getSize() == 0) continue;
+			if (first || line.getMinX() < minX) minX = line.getMinX();
+			first = false;
 		}
-		maxX = max;
-		return maxX;
+		return minX;
 	}
 	
+	/**
+	 * Draws the graph from three independently cached layers: the grid and axis
+	 * vertices, which only change with the layout; the lines and markers in
+	 * {@code fullImage}, which is only redrawn after {@link #update()} and the
+	 * other data setters; and the touch selection, which is drawn on top every
+	 * frame so tapping never redraws the data. With background rendering the
+	 * data layer is the latest frame the renderer has completed.
+	 */
 	public void onDraw(Canvas ca) {
-		if (fullImage == null || shouldUpdate) {
-			fullImage = Bitmap.createBitmap(getWidth(), getHeight(), Config.ARGB_8888);
-			Canvas canvas = new Canvas(fullImage);
-			String max = (int)maxY+"";// used to display max
-			String min = (int)minY+"";// used to display min
+		if (renderer == null && fullImage == null) {
+			allocateFullImage(getWidth(), getHeight());
+			if (fullImage == null) return;
+		}
+		drawing = true;
+		for (int i = 0; i < feeds.size(); i++) {
+			if (feeds.get(i).drain() > 0) {
+				shouldUpdate = true;
+			}
+		}
+		drawing = false;
+		if (shouldUpdate) {
+			shouldUpdate = false;
+			if (renderer != null) {
+				// The frame drawn before the one on screen is done with, and
+				// its geometry is the likeliest to still match the lines.
+				DataFrame next = spareFrame != null ? spareFrame : new DataFrame();
+				spareFrame = null;
+				next.capture(snapshotLines());
+				renderer.submit(next, getWidth(), getHeight());
+			} else {
+				if (frame == null) {
+					frame = new DataFrame();
+				}
+				fullImage.eraseColor(Color.TRANSPARENT);
+				frame.capture(lines);
+				frame.render(fullCanvas);
+				frame.publish();
+			}
+		}
+		if (chromeDirty) {
+			buildChrome();
+		}
+		
+		ca.drawLines(gridVertices, 0, gridVertexCount, gridPaint);
+		if (renderer != null) {
+			renderer.draw(ca);
+		} else {
+			ca.drawBitmap(fullImage, 0, 0, null);
+		}
+		
+        if (this.showMinAndMax) {
+			ca.drawText(maxLabel, 0, txtPaint.getTextSize(), txtPaint);
+			ca.drawText(minLabel, 0, this.getHeight(), txtPaint);
+		}
+		
+		LineGeometry geometry = getSelectedGeometry();
+		if (geometry != null && listener != null) {
+			ca.drawCircle(geometry.points[selectedMarker * 2], geometry.points[selectedMarker * 2 + 1], TOUCH_RADIUS, selectionPaint);
+		}
+	}
+	
+	/**
+	 * Draws the lines and markers on a background thread from a snapshot of the
+	 * data taken at each {@link #update()}, so projecting and rasterizing large
+	 * lines never blocks the UI thread. {@link #onDraw(Canvas)} only copies the
+	 * latest finished frame, and frames made stale by newer data are dropped.
+	 * A plain {@link Line} shares its points with the snapshot, so appending
+	 * costs nothing extra; the first in-place change or removal after an update
+	 * copies them once. Other lines are copied in full on the UI thread when
+	 * they changed since the last update, and reused otherwise.
+	 */
+	public void setBackgroundRendering(boolean enabled){
+		if (enabled == (renderer != null)) return;
+		if (enabled) {
+			releaseFullImage();
+			renderer = new BackgroundRenderer(this);
+		} else {
+			renderer.release();
+			renderer = null;
+		}
+		selectedLine = -1;
+		drawnFrame = null;
+		spareFrame = null;
+		update();
+	}
+	public boolean isBackgroundRendering(){
+		return renderer != null;
+	}
+	
+	/**
+	 * Forgets the frame on screen once lines are added or removed: its hit
+	 * index numbers lines by their old positions, so taps are ignored until
+	 * the next frame is drawn.
+	 */
+	private void onLineSetChanged() {
+		invalidateSelection();
+		selectedLine = -1;
+		selectedMarker = -1;
+		drawnFrame = null;
+		update();
+	}
+	
+	private void onLineChanged() {
+		if (drawing) {
+			// Already inside the frame that will pick the change up.
+			shouldUpdate = true;
+		} else {
+			update();
+		}
+	}
+	
+	/**
+	 * Whether points appended to a sorted line from {@code from} on land right
+	 * of the viewport, past the one point drawn beyond its edge, where they
+	 * cannot change anything on screen. With the Y axis fitted to all the data
+	 * they still could, so that case always redraws.
+	 */
+	private boolean isOffscreen(Line line, int from) {
+		return hasViewport && (autoScaleY || isMaxYUserSet) && from > 0
+				&& line.isSortedX() && line.getX(from - 1) > viewportMaxX;
+	}
+	
+	private ArrayList<Line> snapshotLines() {
+		ArrayList<Line> copies = new ArrayList<Line>(lines.size());
+		for (Line line : lines){
+			copies.add(line.snapshot());
+		}
+		return copies;
+	}
+	
+	/**
+	 * The geometry of the selected marker's line in the frame on screen, or null
+	 * if nothing is selected.
+	 */
+	private LineGeometry getSelectedGeometry() {
+		if (drawnFrame == null || selectedLine < 0 || selectedLine >= drawnFrame.lines.size()) return null;
+		LineGeometry geometry = drawnFrame.geometries[selectedLine];
+		return selectedMarker < geometry.pointCount ? geometry : null;
+	}
+	
+	/**
+	 * A repeating tile with one diagonal of the fill hatch, created on first use.
+	 */
+	private Bitmap getHatchTile() {
+		if (hatchTile == null) {
+			hatchTile = Bitmap.createBitmap(HATCH_SPACING, HATCH_SPACING, Config.ARGB_8888);
+			Canvas tileCanvas = new Canvas(hatchTile);
+			Paint hatchPaint = new Paint();
+			hatchPaint.setColor(Color.BLACK);
+			hatchPaint.setAlpha(30);
+			hatchPaint.setStrokeWidth(2);
+			// Draw the neighbouring diagonals too so the stroke wraps across tile edges.
+			for (int offset = -HATCH_SPACING; offset <= HATCH_SPACING; offset += HATCH_SPACING) {
+				tileCanvas.drawLine(offset, 0, offset + HATCH_SPACING, HATCH_SPACING, hatchPaint);
+			}
+		}
+		return hatchTile;
+	}
+	
+	private void buildChrome() {
+		float bottom = getHeight() - bottomPadding;
+		float lineSpace = usableHeight/10;
+		int count = 0;
+		int gridLines = showHorizontalGrid ? 10 : 0;
+		for (int i = 0; i <= gridLines; i++){
+			gridVertices[count++] = sidePadding;
+			gridVertices[count++] = bottom - (i*lineSpace);
+			gridVertices[count++] = getWidth();
+			gridVertices[count++] = bottom - (i*lineSpace);
+		}
+		gridVertexCount = count;
+		gridPaint.setColor(gridColor);
+		gridPaint.setAlpha(50);
+		chromeDirty = false;
+	}
+	
+	/**
+	 * Writes the Y range of the points of {@code line} with X in [{@code fromX},
+	 * {@code toX}] to {@code out} and returns whether there were any.
+	 */
+	private static boolean findYRange(Line line, float fromX, float toX, float[] out) {
+		if (line.isSortedX()) {
+			int from = line.lowerBound(fromX);
+			int to = line.upperBound(toX);
+			if (from >= to) return false;
+			line.getYRange(from, to, out);
+			return true;
+		}
+		boolean found = false;
+		for (int i = 0; i < line.getSize(); i++) {
+			float x = line.getX(i);
+			if (x < fromX || x > toX) continue;
+			float y = line.getY(i);
+			if (!found || y < out[0]) out[0] = y;
+			if (!found || y > out[1]) out[1] = y;
+			found = true;
+		}
+		return found;
+	}
+	
+	/**
+	 * One rendering of the data layer: the lines it was drawn from, with their
+	 * projected geometry, and the layout and hit index worked out on the way.
+	 * Everything it reads from the graph is captured on the UI thread, so a
+	 * frame over snapshot lines can be rendered on the background thread.
+	 * The geometry and downsampling of each line slot belong to the frame, so
+	 * the UI thread never reads what the renderer is writing.
+	 */
+	private final class DataFrame implements BackgroundRenderer.Frame {
+		
+		final ArrayList<Line> lines = new ArrayList<Line>();
+		LineGeometry[] geometries = new LineGeometry[0];
+		private DownsampleCache[] caches = new DownsampleCache[0];
+		final PointHitIndex hitIndex = new PointHitIndex(TOUCH_RADIUS);
+		
+		private int width, height;
+		private int downsampling, lineToFill, labelSize;
+		private boolean showMinAndMax, hasViewport, autoScaleY, userRangeY;
+		private float viewportMinX, viewportMaxX, xWindow, userMinY, userMaxY;
+		private Bitmap hatchTile;
+		private final Paint txtPaint = new Paint();
+		
+		private float sidePadding, bottomPadding, usableWidth, usableHeight;
+		private float drawnMinX, drawnMaxX;
+		private String maxLabel, minLabel;
+		
+		private final Paint paint = new Paint();
+		private final Paint fillPaint = new Paint();
+		private final Path path = new Path();
+		private final Matrix hatchMatrix = new Matrix();
+		private final float[] yRange = new float[2];
+		private BitmapShader hatchShader;
+		
+		void capture(List<Line> lines) {
+			// A copy, so the frame keeps matching its hit index whatever
+			// happens to the graph's list afterwards.
+			this.lines.clear();
+			this.lines.addAll(lines);
+			width = getWidth();
+			height = getHeight();
+			downsampling = LineGraph.this.downsampling;
+			lineToFill = LineGraph.this.lineToFill;
+			labelSize = LineGraph.this.labelSize;
+			showMinAndMax = LineGraph.this.showMinAndMax;
+			hasViewport = LineGraph.this.hasViewport;
+			viewportMinX = LineGraph.this.viewportMinX;
+			viewportMaxX = LineGraph.this.viewportMaxX;
+			xWindow = LineGraph.this.xWindow;
+			autoScaleY = LineGraph.this.autoScaleY;
+			userRangeY = isMaxYUserSet;
+			userMinY = LineGraph.this.minY;
+			userMaxY = LineGraph.this.maxY;
+			txtPaint.set(LineGraph.this.txtPaint);
+			if (lineToFill >= 0 && hatchTile == null) {
+				hatchTile = getHatchTile();
+			}
+		}
+		
+		@Override
+		public void render(Canvas canvas) {
+			// Only ask the lines for the bounds the viewport and the user's Y
+			// range leave open: a line over a file has to read all of it to
+			// find its Y bounds.
+			float minX = 0, maxX = 0, minY = 0, maxY = 0;
+			if (hasViewport) {
+				minX = viewportMinX;
+				maxX = viewportMaxX;
+			} else {
+				boolean first = true;
+				for (Line line : lines){
+					if (line.getSize() == 0) continue;
+					if (first || line.getMinX() < minX) minX = line.getMinX();
+					if (first || line.getMaxX() > maxX) maxX = line.getMaxX();
+					first = false;
+				}
+				if (xWindow > 0) {
+					minX = maxX - xWindow;
+				}
+			}
+			boolean clipX = hasViewport || xWindow > 0;
+			boolean foundY = false;
+			if (userRangeY) {
+				minY = userMinY;
+				maxY = userMaxY;
+				foundY = true;
+			} else if (autoScaleY && clipX) {
+				for (Line line : lines){
+					if (!findYRange(line, minX, maxX, yRange)) continue;
+					if (!foundY || yRange[0] < minY) minY = yRange[0];
+					if (!foundY || yRange[1] > maxY) maxY = yRange[1];
+					foundY = true;
+				}
+				if (foundY && minY == maxY) {
+					minY -= 1;
+					maxY += 1;
+				}
+			}
+			if (!foundY) {
+				boolean first = true;
+				for (Line line : lines){
+					if (line.getSize() == 0) continue;
+					if (first || line.getMinY() < minY) minY = line.getMinY();
+					if (first || line.getMaxY() > maxY) maxY = line.getMaxY();
+					first = false;
+				}
+			}
+			drawnMinX = minX;
+			drawnMaxX = maxX;
+			maxLabel = (int)maxY+"";// used to display max
+			minLabel = (int)minY+"";// used to display min
 			paint.reset();
-			Path path = new Path();
 			
-			float bottomPadding = 10, topPadding = 10;
-			float sidePadding = 10;
-            if (this.showMinAndMax)
-                sidePadding = txtPaint.measureText(max);
-            if (labelSize > bottomPadding) {
+			float topPadding = 10;
+			bottomPadding = 10;
+			sidePadding = 10;
+			if (showMinAndMax)
+				sidePadding = txtPaint.measureText(maxLabel);
+			if (labelSize > bottomPadding) {
 				bottomPadding = labelSize;
-			} 
+			}
 			
-			float usableHeight = getHeight() - bottomPadding - topPadding;
-			float usableWidth = getWidth() - sidePadding*2;
-			float lineSpace = usableHeight/10;
+			usableHeight = height - bottomPadding - topPadding;
+			usableWidth = width - sidePadding*2;
+			float bottom = height - bottomPadding;
 			
-			int lineCount = 0;
-			for (Line line : lines){
-				int count = 0;
-                float lastXPixels = 0, newYPixels;
-                float lastYPixels = 0, newXPixels;
-                float maxY = getMaxY();
-				float minY = getMinY();
-				float maxX = getMaxX();
-				float minX = getMinX();
-				
-				if (lineCount == lineToFill){
-					paint.setColor(Color.BLACK);
-					paint.setAlpha(30);
-					paint.setStrokeWidth(2);
-					for (int i = 10; i-getWidth() < getHeight(); i = i+20){
-						canvas.drawLine(i, getHeight()-bottomPadding, 0, getHeight()-bottomPadding-i, paint);
-					}
-					
-					paint.reset();
-					
-					paint.setXfermode(new PorterDuffXfermode(android.graphics.PorterDuff.Mode.CLEAR));
-					for (LinePoint p : line.getPoints()){
-						float yPercent = (p.getY()-minY)/(maxY - minY);
-						float xPercent = (p.getX()-minX)/(maxX - minX);
-						if (count == 0){
-							lastXPixels = sidePadding + (xPercent*usableWidth);
-							lastYPixels = getHeight() - bottomPadding - (usableHeight*yPercent);
-							path.moveTo(lastXPixels, lastYPixels);
-						} else {
-							newXPixels = sidePadding + (xPercent*usableWidth);
-							newYPixels = getHeight() - bottomPadding - (usableHeight*yPercent);
-							path.lineTo(newXPixels, newYPixels);
-							Path pa = new Path();
-							pa.moveTo(lastXPixels, lastYPixels);
-							pa.lineTo(newXPixels, newYPixels);
-							pa.lineTo(newXPixels, 0);
-							pa.lineTo(lastXPixels, 0);
-							pa.close();
-							canvas.drawPath(pa, paint);
-							lastXPixels = newXPixels;
-							lastYPixels = newYPixels;
-						}
-						count++;
+			if (geometries.length < lines.size()) {
+				LineGeometry[] grownGeometries = new LineGeometry[lines.size()];
+				DownsampleCache[] grownCaches = new DownsampleCache[lines.size()];
+				System.arraycopy(geometries, 0, grownGeometries, 0, geometries.length);
+				System.arraycopy(caches, 0, grownCaches, 0, caches.length);
+				for (int i = geometries.length; i < lines.size(); i++) {
+					grownGeometries[i] = new LineGeometry();
+					grownCaches[i] = new DownsampleCache();
+				}
+				geometries = grownGeometries;
+				caches = grownCaches;
+			}
+			for (int i = 0; i < lines.size(); i++){
+				Line line = lines.get(i);
+				// Cull sorted lines to the visible slice plus one point on each side,
+				// so the segments crossing the edges are still drawn.
+				int from = 0, to = line.getSize();
+				if (clipX && line.isSortedX()) {
+					from = Math.max(0, line.lowerBound(minX) - 1);
+					to = Math.min(line.getSize(), line.upperBound(maxX) + 1);
+				}
+				DownsampleCache sampled = downsample(line, caches[i], from, to, minX, maxX);
+				int mode = sampled != null ? sampled.getMode() : DOWNSAMPLING_NONE;
+				geometries[i].project(line, from, to, sampled, mode, minX, maxX, minY, maxY,
+						sidePadding, bottom, usableWidth, usableHeight);
+			}
+			
+			if (clipX) {
+				canvas.save();
+				canvas.clipRect(sidePadding, 0, width - sidePadding, height);
+			}
+			
+			if (lineToFill >= 0 && lineToFill < lines.size()){
+				LineGeometry geometry = geometries[lineToFill];
+				if (geometry.pointCount > 1){
+					float[] points = geometry.points;
+					int last = (geometry.pointCount - 1) * 2;
+					path.rewind();
+					path.incReserve(geometry.pointCount + 2);
+					path.moveTo(points[0], bottom);
+					for (int k = 0; k <= last; k += 2){
+						path.lineTo(points[k], points[k + 1]);
 					}
-					
-					path.reset();
-					
-					path.moveTo(0, getHeight()-bottomPadding);
-					path.lineTo(sidePadding, getHeight()-bottomPadding);
-					path.lineTo(sidePadding, 0);
-					path.lineTo(0, 0);
+					path.lineTo(points[last], bottom);
 					path.close();
-					canvas.drawPath(path, paint);
-					
-					path.reset();
-					
-					path.moveTo(getWidth(), getHeight()-bottomPadding);
-					path.lineTo(getWidth()-sidePadding, getHeight()-bottomPadding);
-					path.lineTo(getWidth()-sidePadding, 0);
-					path.lineTo(getWidth(), 0);
-					path.close();
-					
-					canvas.drawPath(path, paint);
 					
+					if (hatchShader == null) {
+						hatchShader = new BitmapShader(hatchTile, Shader.TileMode.REPEAT, Shader.TileMode.REPEAT);
+						fillPaint.setShader(hatchShader);
+					}
+					// Line the hatch up with the diagonals the fill used to be drawn with.
+					hatchMatrix.setTranslate(((10 - bottom) % HATCH_SPACING + HATCH_SPACING) % HATCH_SPACING, 0);
+					hatchShader.setLocalMatrix(hatchMatrix);
+					canvas.drawPath(path, fillPaint);
 				}
-				
-				lineCount++;
 			}
 			
-			paint.reset();
-			
-			paint.setColor(this.gridColor);
-			paint.setAlpha(50);
 			paint.setAntiAlias(true);
-			canvas.drawLine(sidePadding, getHeight() - bottomPadding, getWidth(), getHeight()-bottomPadding, paint);
-			if(this.showHorizontalGrid)
-				for(int i=1;i<=10;i++)
-				{
-					canvas.drawLine(sidePadding, getHeight() - bottomPadding-(i*lineSpace), getWidth(), getHeight()-bottomPadding-(i*lineSpace), paint);
-				}
-			paint.setAlpha(255);
-			
-			
 			paint.setTextAlign(Align.CENTER);
 			paint.setTextSize(labelSize);
 			
-			for (Line line : lines){
-				int count = 0;
-                float lastXPixels = 0, newYPixels;
-                float lastYPixels = 0, newXPixels;
-                float maxY = getMaxY();
-				float minY = getMinY();
-				float maxX = getMaxX();
-				float minX = getMinX();
+			for (int i = 0; i < lines.size(); i++){
+				Line line = lines.get(i);
+				LineGeometry geometry = geometries[i];
 				
 				paint.setColor(line.getColor());
 				paint.setStrokeWidth(6);
+				if (geometry.vertexCount > 0){
+					canvas.drawLines(geometry.vertices, 0, geometry.vertexCount, paint);
+				}
 				
-				for (LinePoint p : line.getPoints()){
-					float yPercent = (p.getY()-minY)/(maxY - minY);
-					float xPercent = (p.getX()-minX)/(maxX - minX);
-					if (count == 0){
-						lastXPixels = sidePadding + (xPercent*usableWidth);
-						lastYPixels = getHeight() - bottomPadding - (usableHeight*yPercent);
-					} else {
-						newXPixels = sidePadding + (xPercent*usableWidth);
-						newYPixels = getHeight() - bottomPadding - (usableHeight*yPercent);
-						canvas.drawLine(lastXPixels, lastYPixels, newXPixels, newYPixels, paint);
-						lastXPixels = newXPixels;
-						lastYPixels = newYPixels;
+				if (line.hasLabels()){
+					for (int k = 0; k < geometry.pointCount; k++){
+						String label = line.getLabel(geometry.indices[k]);
+						if (label != null) {
+							canvas.drawText(label, geometry.points[k * 2], usableHeight+bottomPadding, paint);
+						}
 					}
-					if (p.getLabel_string()!=null) {
-						canvas.drawText(p.getLabel_string(), lastXPixels, usableHeight+bottomPadding, paint);
-					} 
-					count++;
 				}
 			}
 			
+			paint.setStrokeCap(Paint.Cap.ROUND);
 			
-			int pointCount = 0;
-			
-			for (Line line : lines){
-				float maxY = getMaxY();
-				float minY = getMinY();
-				float maxX = getMaxX();
-				float minX = getMinX();
-				
-				paint.setColor(line.getColor());
-				paint.setStrokeWidth(6);
-				paint.setStrokeCap(Paint.Cap.ROUND);
-				
-				if (line.isShowingPoints()){
-					for (LinePoint p : line.getPoints()){
-						float yPercent = (p.getY()-minY)/(maxY - minY);
-						float xPercent = (p.getX()-minX)/(maxX - minX);
-						float xPixels = sidePadding + (xPercent*usableWidth);
-						float yPixels = getHeight() - bottomPadding - (usableHeight*yPercent);
-						
-						paint.setColor(Color.GRAY);
-						canvas.drawCircle(xPixels, yPixels, 10, paint);
-						paint.setColor(Color.WHITE);
-						canvas.drawCircle(xPixels, yPixels, 5, paint);
-						
-						Path path2 = new Path();
-						path2.addCircle(xPixels, yPixels, 30, Direction.CW);
-						p.setPath(path2);
-						p.setRegion(new Region((int)(xPixels-30), (int)(yPixels-30), (int)(xPixels+30), (int)(yPixels+30)));
-						
-						if (indexSelected == pointCount && listener != null){
-							paint.setColor(Color.parseColor("#33B5E5"));
-							paint.setAlpha(100);
-							canvas.drawPath(p.getPath(), paint);
-							paint.setAlpha(255);
-						}
-						
-						pointCount++;
-					}
+			for (int i = 0; i < lines.size(); i++){
+				if (lines.get(i).isShowingPoints()){
+					LineGeometry geometry = geometries[i];
+					paint.setColor(Color.GRAY);
+					paint.setStrokeWidth(20);
+					canvas.drawPoints(geometry.points, 0, geometry.pointCount * 2, paint);
+					paint.setColor(Color.WHITE);
+					paint.setStrokeWidth(10);
+					canvas.drawPoints(geometry.points, 0, geometry.pointCount * 2, paint);
 				}
 			}
 			
-			shouldUpdate = false;
-            if (this.showMinAndMax) {
-				ca.drawText(max, 0, txtPaint.getTextSize(), txtPaint);
-				ca.drawText(min,0,this.getHeight(),txtPaint);
+			if (clipX) {
+				canvas.restore();
 			}
+			
+			hitIndex.build(lines, geometries, width, height);
 		}
 		
-		ca.drawBitmap(fullImage, 0, 0, null);
-		
+		@Override
+		public void publish() {
+			LineGraph graph = LineGraph.this;
+			if (drawnFrame != null && drawnFrame != this) {
+				spareFrame = drawnFrame;
+			}
+			if (sidePadding != graph.sidePadding || bottomPadding != graph.bottomPadding || usableHeight != graph.usableHeight) {
+				chromeDirty = true;
+			}
+			graph.sidePadding = sidePadding;
+			graph.bottomPadding = bottomPadding;
+			graph.usableWidth = usableWidth;
+			graph.usableHeight = usableHeight;
+			graph.maxLabel = maxLabel;
+			graph.minLabel = minLabel;
+			graph.drawnMinX = drawnMinX;
+			graph.drawnMaxX = drawnMaxX;
+			drawnFrame = this;
+		}
 		
+		/**
+		 * Returns the downsampled indices for {@code line}, kept in {@code cache}
+		 * for its slot, or null when every point should be drawn. Lines with a
+		 * level-of-detail pyramid read it instead of scanning their points once
+		 * there are enough of them. The result is cached until the line, the
+		 * usable width or, for M4, the X range changes.
+		 */
+		private DownsampleCache downsample(Line line, DownsampleCache cache, int from, int to, float minX, float maxX) {
+			// LTTB, M4 and the pyramid all bucket consecutive points by X.
+			if (!line.isSortedX()) return null;
+			int columns = Math.max(1, (int) usableWidth);
+			int mode = downsampling;
+			if (line.isLevelOfDetailEnabled() && to - from >= columns << line.getPyramid().getBaseShift()) {
+				mode = DownsampleCache.MODE_PYRAMID;
+			} else {
+				int threshold = downsampling == DOWNSAMPLING_M4 ? columns * 4 : columns * 2;
+				if (downsampling == DOWNSAMPLING_NONE || to - from <= threshold) {
+					return null;
+				}
+			}
+			if (!cache.isValid(line, from, to, mode, columns, minX, maxX)) {
+				cache.update(line, from, to, mode, columns, minX, maxX);
+			}
+			return cache;
+		}
+	}
+	
+	@Override
+	protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+		super.onSizeChanged(w, h, oldw, oldh);
+		// The grid spans the view, whichever way the data layer is drawn.
+		chromeDirty = true;
+		if (renderer != null) {
+			shouldUpdate = true;
+		} else {
+			allocateFullImage(w, h);
+		}
+	}
+	
+	@Override
+	protected void onAttachedToWindow() {
+		super.onAttachedToWindow();
+		attached = true;
+		for (Line line : lines){
+			line.addOnLineChangedListener(lineListener);
+		}
+		for (int i = 0; i < feeds.size(); i++) {
+			feeds.get(i).setTarget(this);
+		}
+		// Changes made while detached went unheard.
+		update();
+	}
+	
+	@Override
+	protected void onDetachedFromWindow() {
+		super.onDetachedFromWindow();
+		attached = false;
+		// Lines and feeds may outlive the view; they must not keep it reachable.
+		for (Line line : lines){
+			line.removeOnLineChangedListener(lineListener);
+		}
+		for (int i = 0; i < feeds.size(); i++) {
+			feeds.get(i).setTarget(null);
+		}
+		scheduler.cancel();
+		releaseFullImage();
+		if (renderer != null) {
+			renderer.release();
+			shouldUpdate = true;
+		}
+	}
+	
+	private void allocateFullImage(int width, int height) {
+		releaseFullImage();
+		if (width > 0 && height > 0) {
+			fullImage = Bitmap.createBitmap(width, height, Config.ARGB_8888);
+			fullCanvas = new Canvas(fullImage);
+			shouldUpdate = true;
+			chromeDirty = true;
+		}
+	}
+	
+	private void releaseFullImage() {
+		if (fullImage != null) {
+			fullImage.recycle();
+			fullImage = null;
+			fullCanvas = null;
+		}
+	}
+	
+	/**
+	 * Invalidates only the area covered by the current selection halo.
+	 */
+	private void invalidateSelection() {
+		LineGeometry geometry = getSelectedGeometry();
+		if (geometry == null) return;
+		float x = geometry.points[selectedMarker * 2];
+		float y = geometry.points[selectedMarker * 2 + 1];
+		int radius = (int) Math.ceil(TOUCH_RADIUS) + 1;
+		dirty.set((int) x - radius, (int) y - radius, (int) x + radius, (int) y + radius);
+		invalidate(dirty);
+	}
+	
+	private void zoomBy(float scaleFactor, float focusX) {
+		gesturing = true;
+		float minX = getViewportMinX();
+		float span = getViewportMaxX() - minX;
+		if (!isUsableSpan(span) || !(scaleFactor > 0)) return;
+		float focus = usableWidth > 0 ? (focusX - sidePadding) / usableWidth : 0.5f;
+		focus = Math.max(0, Math.min(1, focus));
+		float focusValue = minX + focus * span;
+		float newSpan = Math.max(span / scaleFactor, minimumSpan(focusValue));
+		setGestureViewport(focusValue - focus * newSpan, focusValue + (1 - focus) * newSpan);
+	}
+	
+	private void panBy(float pixels) {
+		if (usableWidth <= 0) return;
+		float minX = getViewportMinX();
+		float maxX = getViewportMaxX();
+		if (!isUsableSpan(maxX - minX)) return;
+		float delta = pixels * (maxX - minX) / usableWidth;
+		setGestureViewport(minX + delta, maxX + delta);
+	}
+	
+	/**
+	 * Whether a viewport span can be zoomed or panned: an empty graph, a single
+	 * point or points all at one X leave nothing to scale.
+	 */
+	private static boolean isUsableSpan(float span) {
+		return span > 0 && !Float.isInfinite(span);
+	}
+	
+	/**
+	 * The smallest span around {@code x} whose ends are still distinct floats,
+	 * with some room so zooming in does not stall on rounding.
+	 */
+	private static float minimumSpan(float x) {
+		return Math.ulp(Math.abs(x)) * MIN_SPAN_ULPS;
+	}
+	
+	/**
+	 * Like {@link #setViewport(float, float)}, but ignores a range that rounding
+	 * collapsed or overflowed instead of throwing from inside a touch event.
+	 */
+	private void setGestureViewport(float minX, float maxX) {
+		if (maxX > minX && !Float.isInfinite(minX) && !Float.isInfinite(maxX)) {
+			setViewport(minX, maxX);
+		}
+	}
+	
+	/**
+	 * Feeds the viewport gestures and returns whether the event was consumed
+	 * by a pan or zoom rather than being a tap.
+	 */
+	private boolean handleViewportGesture(MotionEvent event) {
+		scaleDetector.onTouchEvent(event);
+		switch (event.getActionMasked()) {
+			case MotionEvent.ACTION_DOWN:
+				downX = lastPanX = event.getX();
+				gesturing = false;
+				break;
+			case MotionEvent.ACTION_POINTER_DOWN:
+				gesturing = true;
+				break;
+			case MotionEvent.ACTION_POINTER_UP:
+				// Keep panning from the finger that stays down.
+				lastPanX = event.getX(event.getActionIndex() == 0 ? 1 : 0);
+				break;
+			case MotionEvent.ACTION_MOVE:
+				if (scaleDetector.isInProgress() || event.getPointerCount() > 1) break;
+				float x = event.getX();
+				if (!gesturing && Math.abs(x - downX) > touchSlop) {
+					gesturing = true;
+				}
+				if (gesturing) {
+					panBy(lastPanX - x);
+				}
+				lastPanX = x;
+				break;
+		}
+		return gesturing;
 	}
 	
 	@Override
 	public boolean onTouchEvent(MotionEvent event) {
 
-	    Point point = new Point();
-	    point.x = (int) event.getX();
-	    point.y = (int) event.getY();
-	    
-	    int count = 0;
-	    int lineCount = 0;
-        int pointCount;
-
-        Region r = new Region();
-	    for (Line line : lines){
-	    	pointCount = 0;
-	    	for (LinePoint p : line.getPoints()){
-	    		
-	    		if (p.getPath() != null && p.getRegion() != null){
-	    			r.setPath(p.getPath(), p.getRegion());
-                    if (r.contains(point.x, point.y) && event.getAction() == MotionEvent.ACTION_DOWN) {
-                        indexSelected = count;
-			    	} else if (event.getAction() == MotionEvent.ACTION_UP){
-                        if (r.contains(point.x, point.y) && listener != null) {
-                            listener.onClick(lineCount, pointCount);
-			    		}
-			    		indexSelected = -1;
-			    	}
-	    		}
-		    	
-		    	pointCount++;
-			    count++;
-	    	}
-	    	lineCount++;
-	    	
+	    if (viewportGestures && handleViewportGesture(event)) {
+	    	invalidateSelection();
+	    	selectedLine = -1;
+	    	selectedMarker = -1;
+	    	return true;
 	    }
+
+	    if (drawnFrame == null) return true;
+	    PointHitIndex hitIndex = drawnFrame.hitIndex;
+	    boolean hit = hitIndex.find(event.getX(), event.getY());
 	    
-	    if (event.getAction() == MotionEvent.ACTION_DOWN || event.getAction() == MotionEvent.ACTION_UP){
-	    	shouldUpdate = true;
-	    	postInvalidate();
+	    if (event.getAction() == MotionEvent.ACTION_DOWN) {
+	    	invalidateSelection();
+	    	selectedLine = hitIndex.hitLine;
+	    	selectedMarker = hitIndex.hitMarker;
+	    	invalidateSelection();
+	    } else if (event.getAction() == MotionEvent.ACTION_UP){
+	    	if (hit && listener != null) {
+	    		listener.onClick(hitIndex.hitLine, drawnFrame.geometries[hitIndex.hitLine].indices[hitIndex.hitMarker]);
+	    	}
+	    	invalidateSelection();
+	    	selectedLine = -1;
+	    	selectedMarker = -1;
 	    }
 
 	    return true;
@@ -0,0 +1,146 @@
+/*
+ * 	   Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+
+package com.echo.holographlibrary;
+
+/**
+ * A statistic of a {@link Line} drawn as one or more lines of its own, with a
+ * point for every point of the source at the same X. Points appended to the
+ * source are fed through the statistic as they arrive, at O(1) amortized cost
+ * each, and appended to the output lines in one batch, so a graph only
+ * projects the new part of each output. Any other change to the source
+ * recomputes the outputs from scratch.
+ * <p>
+ * The outputs follow a {@link StreamingLine} source by being streaming lines
+ * of the same capacity. They are meant to be read and added to a graph, not
+ * changed.
+ */
+public abstract class LineOverlay {
+
+    private final Line source;
+    private final Line[] lines;
+    private final float[] values;
+    private float[] xs = new float[0];
+    private float[][] ys;
+    private final Line.OnLineChangedListener listener = new Line.OnLineChangedListener() {
+        @Override
+        public void onPointsAppended(Line line, int from, int count) {
+            feed(from, count);
+        }
+
+        @Override
+        public void onPointUpdated(Line line, int index) {
+            recompute();
+        }
+
+        @Override
+        public void onPointsRemoved(Line line, int from, int count) {
+            // A streaming output evicts its own oldest point on the append
+            // that follows.
+            if (line.getSize() == 0 || from != 0 || !(lines[0] instanceof StreamingLine)) {
+                recompute();
+            }
+        }
+    };
+
+    LineOverlay(Line source, int outputs) {
+        this.source = source;
+        this.lines = new Line[outputs];
+        this.values = new float[outputs];
+        this.ys = new float[outputs][0];
+        for (int i = 0; i < outputs; i++) {
+            lines[i] = source instanceof StreamingLine
+                    ? new StreamingLine(((StreamingLine) source).getCapacity())
+                    : new Line();
+            lines[i].setShowingPoints(false);
+        }
+    }
+
+    public Line getSource() {
+        return source;
+    }
+
+    /**
+     * The main output line of this overlay.
+     */
+    public Line getLine() {
+        return lines[0];
+    }
+
+    /**
+     * Stops following the source line. The outputs keep the points they have.
+     */
+    public void release() {
+        source.removeOnLineChangedListener(listener);
+    }
+
+    /**
+     * Computes the outputs for the points the source already has and starts
+     * following it. Called last by each constructor, once the statistic is
+     * set up.
+     */
+    void attach() {
+        recompute();
+        source.addOnLineChangedListener(listener);
+    }
+
+    Line getLine(int output) {
+        return lines[output];
+    }
+
+    /**
+     * Forgets every value seen.
+     */
+    abstract void reset();
+
+    /**
+     * Takes the next Y value of the source and writes the value of each
+     * output at that point to {@code out}.
+     */
+    abstract void add(float y, float[] out);
+
+    private void recompute() {
+        reset();
+        for (Line line : lines) {
+            line.clear();
+        }
+        feed(0, source.getSize());
+    }
+
+    private void feed(int from, int count) {
+        if (count == 0) return;
+        if (xs.length < count) {
+            xs = new float[count];
+            for (int j = 0; j < lines.length; j++) {
+                ys[j] = new float[count];
+            }
+        }
+        for (int k = 0; k < count; k++) {
+            xs[k] = source.getX(from + k);
+            add(source.getY(from + k), values);
+            for (int j = 0; j < lines.length; j++) {
+                ys[j][k] = values[j];
+            }
+        }
+        for (int j = 0; j < lines.length; j++) {
+            lines[j].addPoints(xs, ys[j], 0, count);
+        }
+    }
+
+}
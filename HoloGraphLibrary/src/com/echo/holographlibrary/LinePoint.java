@@ -24,16 +24,15 @@
 
 package com.echo.holographlibrary;
 
-import android.graphics.Path;
-import android.graphics.Region;
-
 public class LinePoint {
 
     private float x = 0;
 	private float y = 0;
-	private Path path;
-	private Region region;
-	private String label_string; 
+	private String label_string;
+	private Line line;
+	private int index;
+	private int removals;
+
 	public LinePoint(float x, float y) {
 		super();
 		this.x = x;
@@ -42,44 +41,63 @@ public class LinePoint {
 
     public LinePoint() { }
 
-	public float getX() {
-		return x;
+	LinePoint(Line line, int index) {
+		attach(line, index);
 	}
 
-	public void setX(float x) {
-		this.x = x;
+	/**
+	 * Binds this point to a slot of a {@link Line}. From then on the getters and
+	 * setters read and write the line's arrays instead of this object, until a
+	 * point is removed from the line.
+	 */
+	void attach(Line line, int index) {
+		this.line = line;
+		this.index = index;
+		this.removals = line.getRemovalCount();
 	}
 
-	public float getY() {
-		return y;
+	private boolean attached() {
+		if (line == null) return false;
+		if (line.getRemovalCount() != removals) {
+			throw new IllegalStateException("Point " + index + " was invalidated by a removal from its line");
+		}
+		return true;
 	}
 
-	public void setY(float y) {
-		this.y = y;
+	public float getX() {
+		return attached() ? line.getX(index) : x;
 	}
 
-	public Region getRegion() {
-		return region;
+	public void setX(float x) {
+		if (attached()) {
+			line.setX(index, x);
+		} else {
+			this.x = x;
+		}
 	}
 
-	public void setRegion(Region region) {
-		this.region = region;
+	public float getY() {
+		return attached() ? line.getY(index) : y;
 	}
 
-	public Path getPath() {
-		return path;
+	public void setY(float y) {
+		if (attached()) {
+			line.setY(index, y);
+		} else {
+			this.y = y;
+		}
 	}
 
-	public void setPath(Path path) {
-		this.path = path;
-	}
-	
 	public String getLabel_string() {
-		return label_string;
+		return attached() ? line.getLabel(index) : label_string;
 	}
 
 	public void setLabel_string(String label_string) {
-		this.label_string = label_string;
+		if (attached()) {
+			line.setLabel(index, label_string);
+		} else {
+			this.label_string = label_string;
+		}
 	}
 
 }
@@ -0,0 +1,526 @@
+/*
+ * 	   Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+
+package com.echo.holographlibrary;
+
+/**
+ * Buckets the points of a {@link Line} by X at one or more widths, such as a
+ * minute, an hour and a day, and keeps the count, sum, lowest and highest Y
+ * of each bucket. Appends to the line are folded into the buckets as they
+ * happen, so every resolution is always ready and switching a graph between
+ * them costs one pass over the buckets, not over the points.
+ * <p>
+ * Each resolution is shown through a read-only line from
+ * {@link #getLine(float, int)}, with one point per bucket at the bucket's
+ * start. It tells its listeners about changes like any other line, so a
+ * graph showing it redraws as the source grows.
+ * <p>
+ * Points removed from the front of a sorted line, as a {@link StreamingLine}
+ * evicts them, only recount the first bucket. Any other change to existing
+ * points rebuilds every resolution from the line.
+ */
+public class LineRollup {
+
+    public static final int MEAN = 0;
+    public static final int MIN = 1;
+    public static final int MAX = 2;
+    public static final int SUM = 3;
+    public static final int COUNT = 4;
+
+    private final Line line;
+    private final Resolution[] resolutions;
+    private final Line.OnLineChangedListener listener = new Line.OnLineChangedListener() {
+        @Override
+        public void onPointsAppended(Line line, int from, int count) {
+            for (Resolution resolution : resolutions) {
+                resolution.append(from, count);
+            }
+        }
+
+        @Override
+        public void onPointUpdated(Line line, int index) {
+            for (Resolution resolution : resolutions) {
+                resolution.rebuild(resolution.size);
+            }
+        }
+
+        @Override
+        public void onPointsRemoved(Line line, int from, int count) {
+            for (Resolution resolution : resolutions) {
+                resolution.seen = Math.max(0, resolution.seen - count);
+                if (from == 0 && line.isSortedX()) {
+                    resolution.trimFront();
+                } else {
+                    resolution.rebuild(resolution.size);
+                }
+            }
+        }
+    };
+
+    /**
+     * Buckets {@code line} at each of {@code widths}, in the units of its X
+     * values. Bucket boundaries fall on multiples of the width.
+     */
+    public LineRollup(Line line, float... widths) {
+        this.line = line;
+        resolutions = new Resolution[widths.length];
+        for (int i = 0; i < widths.length; i++) {
+            if (!(widths[i] > 0)) {
+                throw new IllegalArgumentException("Bucket width must be positive: " + widths[i]);
+            }
+            resolutions[i] = new Resolution(line, widths[i]);
+            resolutions[i].seen = line.getSize();
+            resolutions[i].rebuild(0);
+        }
+        line.addOnLineChangedListener(listener);
+    }
+
+    public Line getSource() {
+        return line;
+    }
+
+    /**
+     * Returns the line showing {@code aggregate} ({@link #MEAN}, {@link #MIN},
+     * {@link #MAX}, {@link #SUM} or {@link #COUNT}) of each bucket of the
+     * resolution {@code width}. The same line is returned on every call.
+     */
+    public Line getLine(float width, int aggregate) {
+        if (aggregate < MEAN || aggregate > COUNT) {
+            throw new IllegalArgumentException("Unknown aggregate: " + aggregate);
+        }
+        Resolution resolution = resolution(width);
+        if (resolution.views[aggregate] == null) {
+            resolution.views[aggregate] = new RollupLine(resolution, aggregate);
+        }
+        return resolution.views[aggregate];
+    }
+
+    public int getBucketCount(float width) {
+        return resolution(width).size;
+    }
+
+    /**
+     * Stops following the source line. The resolutions keep the buckets they
+     * have.
+     */
+    public void release() {
+        line.removeOnLineChangedListener(listener);
+    }
+
+    private Resolution resolution(float width) {
+        for (Resolution resolution : resolutions) {
+            if (resolution.width == width) return resolution;
+        }
+        throw new IllegalArgumentException("No resolution of width " + width);
+    }
+
+    /**
+     * The buckets of one width, sorted by key, where a bucket's key is the X
+     * of its points divided by the width, rounded down.
+     */
+    private static final class Resolution {
+
+        final Line line;
+        final float width;
+        final RollupLine[] views = new RollupLine[COUNT + 1];
+        long[] keys = new long[0];
+        int[] counts = new int[0];
+        double[] sums = new double[0];
+        float[] mins = new float[0];
+        float[] maxs = new float[0];
+        int size;
+        /**
+         * Number of points of the line folded into the buckets. A line may
+         * already hold points it has not yet announced, as a StreamingLine
+         * appends before it reports evicting, so only these are ever read.
+         */
+        int seen;
+        int modCount;
+        int rewriteCount;
+
+        Resolution(Line line, float width) {
+            this.line = line;
+            this.width = width;
+        }
+
+        long key(float x) {
+            return (long) Math.floor(x / (double) width);
+        }
+
+        void append(int from, int count) {
+            seen = from + count;
+            int known = size;
+            int lastChanged = -1;
+            for (int i = from; i < from + count; i++) {
+                long key = key(line.getX(i));
+                int bucket = size > 0 && key == keys[size - 1] ? size - 1 : find(key);
+                if (bucket < 0) {
+                    bucket = -bucket - 1;
+                    if (bucket < size) {
+                        // Out of order: every later bucket moves.
+                        rebuild(known);
+                        return;
+                    }
+                    insert(bucket, key);
+                } else if (bucket < known) {
+                    if (bucket < known - 1) {
+                        rebuild(known);
+                        return;
+                    }
+                    lastChanged = bucket;
+                }
+                add(bucket, line.getY(i));
+            }
+            modCount++;
+            if (lastChanged >= 0) {
+                rewriteCount = modCount;
+                for (RollupLine view : views) {
+                    if (view != null) view.firePointUpdated(lastChanged);
+                }
+            }
+            if (size > known) {
+                for (RollupLine view : views) {
+                    if (view != null) view.firePointsAppended(known, size - known);
+                }
+            }
+        }
+
+        /**
+         * Drops the buckets left empty by points removed from the front of a
+         * sorted line and recounts the first remaining one.
+         */
+        void trimFront() {
+            int known = size;
+            int drop = 0;
+            if (seen == 0) {
+                drop = size;
+            } else {
+                long first = key(line.getX(0));
+                while (drop < size && keys[drop] < first) {
+                    drop++;
+                }
+                if (drop == size || keys[drop] != first) {
+                    rebuild(known);
+                    return;
+                }
+            }
+            size -= drop;
+            System.arraycopy(keys, drop, keys, 0, size);
+            System.arraycopy(counts, drop, counts, 0, size);
+            System.arraycopy(sums, drop, sums, 0, size);
+            System.arraycopy(mins, drop, mins, 0, size);
+            System.arraycopy(maxs, drop, maxs, 0, size);
+            if (size > 0) {
+                // Evicted values cannot be taken back out of a min or max.
+                counts[0] = 0;
+                for (int i = 0; i < seen && key(line.getX(i)) == keys[0]; i++) {
+                    add(0, line.getY(i));
+                }
+            }
+            modCount++;
+            rewriteCount = modCount;
+            for (RollupLine view : views) {
+                if (view == null) continue;
+                if (drop > 0) view.firePointsRemoved(0, drop);
+                if (size > 0) view.firePointUpdated(0);
+            }
+        }
+
+        /**
+         * Rebuckets every point of the line. {@code known} is the bucket
+         * count listeners were last told about.
+         */
+        void rebuild(int known) {
+            size = 0;
+            for (int i = 0; i < seen; i++) {
+                long key = key(line.getX(i));
+                int bucket = size > 0 && key == keys[size - 1] ? size - 1 : find(key);
+                if (bucket < 0) {
+                    bucket = -bucket - 1;
+                    insert(bucket, key);
+                }
+                add(bucket, line.getY(i));
+            }
+            modCount++;
+            rewriteCount = modCount;
+            for (RollupLine view : views) {
+                if (view == null) continue;
+                if (known > 0) view.firePointsRemoved(0, known);
+                if (size > 0) view.firePointsAppended(0, size);
+            }
+        }
+
+        private void add(int bucket, float y) {
+            if (counts[bucket] == 0) {
+                sums[bucket] = y;
+                mins[bucket] = maxs[bucket] = y;
+            } else {
+                sums[bucket] += y;
+                if (y < mins[bucket]) mins[bucket] = y;
+                if (y > maxs[bucket]) maxs[bucket] = y;
+            }
+            counts[bucket]++;
+        }
+
+        /**
+         * Index of the bucket with {@code key}, or {@code -(insertion point) - 1}.
+         */
+        private int find(long key) {
+            int low = 0, high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (keys[mid] < key) {
+                    low = mid + 1;
+                } else if (keys[mid] > key) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -low - 1;
+        }
+
+        private void insert(int bucket, long key) {
+            if (size == keys.length) {
+                int capacity = Math.max(16, size + (size >> 1));
+                keys = grow(keys, capacity);
+                counts = grow(counts, capacity);
+                sums = grow(sums, capacity);
+                mins = grow(mins, capacity);
+                maxs = grow(maxs, capacity);
+            }
+            int moved = size - bucket;
+            System.arraycopy(keys, bucket, keys, bucket + 1, moved);
+            System.arraycopy(counts, bucket, counts, bucket + 1, moved);
+            System.arraycopy(sums, bucket, sums, bucket + 1, moved);
+            System.arraycopy(mins, bucket, mins, bucket + 1, moved);
+            System.arraycopy(maxs, bucket, maxs, bucket + 1, moved);
+            keys[bucket] = key;
+            counts[bucket] = 0;
+            size++;
+        }
+
+        private long[] grow(long[] array, int capacity) {
+            long[] grown = new long[capacity];
+            System.arraycopy(array, 0, grown, 0, size);
+            return grown;
+        }
+
+        private int[] grow(int[] array, int capacity) {
+            int[] grown = new int[capacity];
+            System.arraycopy(array, 0, grown, 0, size);
+            return grown;
+        }
+
+        private double[] grow(double[] array, int capacity) {
+            double[] grown = new double[capacity];
+            System.arraycopy(array, 0, grown, 0, size);
+            return grown;
+        }
+
+        private float[] grow(float[] array, int capacity) {
+            float[] grown = new float[capacity];
+            System.arraycopy(array, 0, grown, 0, size);
+            return grown;
+        }
+
+    }
+
+    /**
+     * One aggregate of one resolution, as a read-only line.
+     */
+    private static final class RollupLine extends Line {
+
+        private final Resolution buckets;
+        private final int aggregate;
+        private final float[] range = new float[2];
+        private int boundsModCount = -1;
+        private float minY, maxY;
+
+        RollupLine(Resolution buckets, int aggregate) {
+            this.buckets = buckets;
+            this.aggregate = aggregate;
+        }
+
+        @Override
+        public float getX(int index) {
+            checkIndex(index);
+            return (float) (buckets.keys[index] * (double) buckets.width);
+        }
+
+        @Override
+        public float getY(int index) {
+            checkIndex(index);
+            switch (aggregate) {
+                case MIN:
+                    return buckets.mins[index];
+                case MAX:
+                    return buckets.maxs[index];
+                case SUM:
+                    return (float) buckets.sums[index];
+                case COUNT:
+                    return buckets.counts[index];
+                default:
+                    return (float) (buckets.sums[index] / buckets.counts[index]);
+            }
+        }
+
+        @Override
+        public int getSize() {
+            return buckets.size;
+        }
+
+        @Override
+        public String getLabel(int index) {
+            checkIndex(index);
+            return null;
+        }
+
+        @Override
+        public void setLabel(int index, String label) {
+            if (label != null) {
+                throw new UnsupportedOperationException("Rollup lines do not store labels");
+            }
+        }
+
+        @Override
+        public void addPoint(float x, float y) {
+            throw new UnsupportedOperationException("Rollup lines are read-only");
+        }
+
+        @Override
+        public void addPoints(float[] xs, float[] ys, int off, int len) {
+            throw new UnsupportedOperationException("Rollup lines are read-only");
+        }
+
+        @Override
+        public void removePoint(int index) {
+            throw new UnsupportedOperationException("Rollup lines are read-only");
+        }
+
+        @Override
+        public void setX(int index, float x) {
+            throw new UnsupportedOperationException("Rollup lines are read-only");
+        }
+
+        @Override
+        public void setY(int index, float y) {
+            throw new UnsupportedOperationException("Rollup lines are read-only");
+        }
+
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException("Rollup lines are read-only");
+        }
+
+        /**
+         * Not supported: the last bucket changes in place as points arrive.
+         */
+        @Override
+        public void setLevelOfDetail(boolean enabled) {
+            if (enabled) {
+                throw new UnsupportedOperationException("Rollup lines do not support level of detail");
+            }
+        }
+
+        @Override
+        public float getMinX() {
+            return buckets.size > 0 ? getX(0) : 0;
+        }
+
+        @Override
+        public float getMaxX() {
+            return buckets.size > 0 ? getX(buckets.size - 1) : 0;
+        }
+
+        @Override
+        public float getMinY() {
+            updateBounds();
+            return minY;
+        }
+
+        @Override
+        public float getMaxY() {
+            updateBounds();
+            return maxY;
+        }
+
+        @Override
+        public boolean isSortedX() {
+            return true;
+        }
+
+        /**
+         * Scans the buckets; there are few enough of them.
+         */
+        @Override
+        void getYRange(int from, int to, float[] out) {
+            float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+            for (int i = from; i < to; i++) {
+                float y = getY(i);
+                if (y < min) min = y;
+                if (y > max) max = y;
+            }
+            out[0] = min;
+            out[1] = max;
+        }
+
+        @Override
+        int getModCount() {
+            return buckets.modCount;
+        }
+
+        @Override
+        int getRewriteCount() {
+            return buckets.rewriteCount;
+        }
+
+        @Override
+        void copyPoints(float[] xs, float[] ys) {
+            for (int i = 0; i < buckets.size; i++) {
+                xs[i] = getX(i);
+                ys[i] = getY(i);
+            }
+        }
+
+        @Override
+        boolean hasLabels() {
+            return false;
+        }
+
+        private void updateBounds() {
+            if (boundsModCount == buckets.modCount) return;
+            boundsModCount = buckets.modCount;
+            minY = maxY = 0;
+            if (buckets.size > 0) {
+                getYRange(0, buckets.size, range);
+                minY = range[0];
+                maxY = range[1];
+            }
+        }
+
+        private void checkIndex(int index) {
+            if (index < 0 || index >= buckets.size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + buckets.size);
+            }
+        }
+
+    }
+
+}
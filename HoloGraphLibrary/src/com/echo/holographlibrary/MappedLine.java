@@ -0,0 +1,186 @@
+/*
+ * 	   Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+
+package com.echo.holographlibrary;
+
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * A read-only {@link Line} over one series of a {@link SeriesFile}. Points are
+ * read from the mapped columns as they are drawn and the bounds come from the
+ * file header, so nothing is scanned before the first frame.
+ * <p>
+ * Level of detail is on by default, with blocks of 256 points so the pyramid
+ * costs about a quarter of a byte per point. It is built from one pass over
+ * the Y column the first time the line is drawn zoomed out.
+ * <p>
+ * The line is drawn in place rather than copied for background rendering;
+ * the columns and size never change, and the pyramid is only built under a
+ * lock.
+ */
+public class MappedLine extends Line {
+
+    private static final int BLOCK_SHIFT = 8;
+
+    private final FloatBuffer floatXs;
+    private final LongBuffer longXs;
+    private final long xOrigin;
+    private final FloatBuffer ys;
+    private final int size;
+    private final boolean sortedX;
+    private final float minX, maxX, minY, maxY;
+
+    MappedLine(FloatBuffer floatXs, LongBuffer longXs, long xOrigin, FloatBuffer ys, int size, boolean sortedX,
+               float minX, float maxX, float minY, float maxY) {
+        this.floatXs = floatXs;
+        this.longXs = longXs;
+        this.xOrigin = xOrigin;
+        this.ys = ys;
+        this.size = size;
+        this.sortedX = sortedX;
+        this.minX = minX;
+        this.maxX = maxX;
+        this.minY = minY;
+        this.maxY = maxY;
+        setLevelOfDetail(true);
+    }
+
+    @Override
+    public float getX(int index) {
+        checkIndex(index);
+        return longXs != null ? (float) (longXs.get(index) - xOrigin) : floatXs.get(index);
+    }
+
+    @Override
+    public float getY(int index) {
+        checkIndex(index);
+        return ys.get(index);
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public String getLabel(int index) {
+        checkIndex(index);
+        return null;
+    }
+
+    @Override
+    public void setLabel(int index, String label) {
+        if (label != null) {
+            throw new UnsupportedOperationException("MappedLine does not store labels");
+        }
+    }
+
+    @Override
+    public void addPoint(float x, float y) {
+        throw new UnsupportedOperationException("MappedLine is read-only");
+    }
+
+    @Override
+    public void addPoints(float[] xs, float[] ys, int off, int len) {
+        throw new UnsupportedOperationException("MappedLine is read-only");
+    }
+
+    @Override
+    public void removePoint(int index) {
+        throw new UnsupportedOperationException("MappedLine is read-only");
+    }
+
+    @Override
+    public void setX(int index, float x) {
+        throw new UnsupportedOperationException("MappedLine is read-only");
+    }
+
+    @Override
+    public void setY(int index, float y) {
+        throw new UnsupportedOperationException("MappedLine is read-only");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("MappedLine is read-only");
+    }
+
+    @Override
+    public float getMinX() {
+        return minX;
+    }
+
+    @Override
+    public float getMaxX() {
+        return maxX;
+    }
+
+    @Override
+    public float getMinY() {
+        return minY;
+    }
+
+    @Override
+    public float getMaxY() {
+        return maxY;
+    }
+
+    @Override
+    public boolean isSortedX() {
+        return sortedX;
+    }
+
+    @Override
+    synchronized void getYRange(int from, int to, float[] out) {
+        super.getYRange(from, to, out);
+    }
+
+    @Override
+    synchronized int sample(int from, int to, int columns, int[] out) {
+        return super.sample(from, to, columns, out);
+    }
+
+    @Override
+    MinMaxPyramid newPyramid() {
+        return new MinMaxPyramid(BLOCK_SHIFT);
+    }
+
+    /**
+     * Returns this line: the mapped columns, the size and the bounds are all
+     * fixed when it is created, so the render thread can read it while the UI
+     * thread does.
+     */
+    @Override
+    Line snapshot() {
+        return this;
+    }
+
+    @Override
+    boolean hasLabels() {
+        return false;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+}
@@ -0,0 +1,264 @@
+/*
+ * 	   Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+
+package com.echo.holographlibrary;
+
+/**
+ * A level-of-detail pyramid over the points of a {@link Line}. Level 0 splits
+ * the line into blocks of {@code 1 << baseShift} points and every level above
+ * halves the number of blocks. Each block stores the index of its lowest and
+ * highest point; its first and last point follow from its position. Appending
+ * a point updates one block per level.
+ */
+final class MinMaxPyramid {
+
+    static final int BASE_SHIFT = 3;
+
+    private final int baseShift;
+    private int[][] minIndex = new int[0][];
+    private int[][] maxIndex = new int[0][];
+    private int levels;
+    private int size;
+    private boolean valid = true;
+
+    MinMaxPyramid() {
+        this(BASE_SHIFT);
+    }
+
+    /**
+     * Larger base blocks make a smaller pyramid, at the cost of scanning more
+     * points at the edges of a range.
+     */
+    MinMaxPyramid(int baseShift) {
+        this.baseShift = baseShift;
+    }
+
+    /**
+     * Adds the point the line just appended at {@code index}.
+     */
+    void append(Line line, int index) {
+        if (!valid || index != size) {
+            valid = false;
+            return;
+        }
+        float y = line.getY(index);
+        for (int level = 0; level < levels; level++) {
+            int shift = baseShift + level;
+            int block = index >> shift;
+            if ((index & ((1 << shift) - 1)) == 0) {
+                ensureBlocks(level, block + 1);
+                minIndex[level][block] = index;
+                maxIndex[level][block] = index;
+            } else {
+                if (y < line.getY(minIndex[level][block])) minIndex[level][block] = index;
+                if (y > line.getY(maxIndex[level][block])) maxIndex[level][block] = index;
+            }
+        }
+        size++;
+        growLevels(line);
+    }
+
+    /**
+     * Marks the pyramid as stale after a point was changed or removed. It is
+     * rebuilt the next time it is used.
+     */
+    void invalidate() {
+        valid = false;
+    }
+
+    void ensureValid(Line line) {
+        if (valid && size == line.getSize()) return;
+        levels = 0;
+        size = line.getSize();
+        valid = true;
+        growLevels(line);
+    }
+
+    /**
+     * Writes the first, min, max and last index of each block of the coarsest
+     * level that still has at least {@code columns} blocks over
+     * [{@code from}, {@code to}). Returns the number of indices written, or -1
+     * if even level 0 is too coarse and the points should be used directly.
+     * {@code out} must hold {@link #capacityFor(int)} entries.
+     */
+    int sample(Line line, int from, int to, int columns, int[] out) {
+        ensureValid(line);
+        int level = -1;
+        for (int l = levels - 1; l >= 0; l--) {
+            if (((to - from) >> (baseShift + l)) >= columns) {
+                level = l;
+                break;
+            }
+        }
+        if (level < 0) return -1;
+
+        int shift = baseShift + level;
+        int count = 0;
+        for (int block = from >> shift; block <= (to - 1) >> shift; block++) {
+            int first = Math.max(block << shift, from);
+            int last = Math.min(((block + 1) << shift) - 1, to - 1);
+            int min = minIndex[level][block];
+            int max = maxIndex[level][block];
+            // A block cut by the range edges may have its extremes outside the
+            // range; it is at most one column wide, so scan it instead.
+            if (min < first || min > last || max < first || max > last) {
+                min = max = first;
+                for (int i = first + 1; i <= last; i++) {
+                    float y = line.getY(i);
+                    if (y < line.getY(min)) min = i;
+                    if (y > line.getY(max)) max = i;
+                }
+            }
+            count = Downsampler.emit(out, count, first, min, max, last);
+        }
+        return count;
+    }
+
+    /**
+     * Writes the lowest and highest Y of the points in [{@code from},
+     * {@code to}) to {@code out[0]} and {@code out[1]}. Only the partial
+     * blocks at both ends are scanned; the rest is covered by at most two
+     * blocks per level, like a segment tree query.
+     */
+    void range(Line line, int from, int to, float[] out) {
+        ensureValid(line);
+        float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+        int blockSize = 1 << baseShift;
+        while (from < to && (from & (blockSize - 1)) != 0) {
+            float y = line.getY(from++);
+            if (y < min) min = y;
+            if (y > max) max = y;
+        }
+        while (to > from && (to & (blockSize - 1)) != 0) {
+            float y = line.getY(--to);
+            if (y < min) min = y;
+            if (y > max) max = y;
+        }
+        int first = from >> baseShift, last = to >> baseShift;
+        for (int level = 0; first < last; level++) {
+            if ((first & 1) != 0) {
+                min = Math.min(min, line.getY(minIndex[level][first]));
+                max = Math.max(max, line.getY(maxIndex[level][first]));
+                first++;
+            }
+            if ((last & 1) != 0) {
+                last--;
+                min = Math.min(min, line.getY(minIndex[level][last]));
+                max = Math.max(max, line.getY(maxIndex[level][last]));
+            }
+            first >>= 1;
+            last >>= 1;
+        }
+        out[0] = min;
+        out[1] = max;
+    }
+
+    /**
+     * The coarsest level picked by {@link #sample} has fewer than
+     * {@code 2 * columns} whole blocks, plus up to two partial ones.
+     */
+    static int capacityFor(int columns) {
+        return 4 * (2 * columns + 2);
+    }
+
+    int getBaseShift() {
+        return baseShift;
+    }
+
+    int getLevels() {
+        return levels;
+    }
+
+    int getMinIndex(int level, int block) {
+        return minIndex[level][block];
+    }
+
+    int getMaxIndex(int level, int block) {
+        return maxIndex[level][block];
+    }
+
+    /**
+     * Adds levels until the top one is a single block, building each new level
+     * from the one below it.
+     */
+    private void growLevels(Line line) {
+        if (size == 0) return;
+        while (levels == 0 || ((size - 1) >> (baseShift + levels - 1)) > 0) {
+            int level = levels;
+            int blocks = ((size - 1) >> (baseShift + level)) + 1;
+            ensureBlocks(level, blocks);
+            int[] mins = minIndex[level];
+            int[] maxs = maxIndex[level];
+            if (level == 0) {
+                for (int block = 0; block < blocks; block++) {
+                    int first = block << baseShift;
+                    int last = Math.min(first + (1 << baseShift), size);
+                    int min = first, max = first;
+                    for (int i = first + 1; i < last; i++) {
+                        float y = line.getY(i);
+                        if (y < line.getY(min)) min = i;
+                        if (y > line.getY(max)) max = i;
+                    }
+                    mins[block] = min;
+                    maxs[block] = max;
+                }
+            } else {
+                int[] childMins = minIndex[level - 1];
+                int[] childMaxs = maxIndex[level - 1];
+                int childBlocks = ((size - 1) >> (baseShift + level - 1)) + 1;
+                for (int block = 0; block < blocks; block++) {
+                    int left = block * 2;
+                    int right = left + 1;
+                    mins[block] = childMins[left];
+                    maxs[block] = childMaxs[left];
+                    if (right < childBlocks) {
+                        if (line.getY(childMins[right]) < line.getY(mins[block])) mins[block] = childMins[right];
+                        if (line.getY(childMaxs[right]) > line.getY(maxs[block])) maxs[block] = childMaxs[right];
+                    }
+                }
+            }
+            levels++;
+        }
+    }
+
+    private void ensureBlocks(int level, int blocks) {
+        if (level >= minIndex.length) {
+            int[][] newMin = new int[level + 1][];
+            int[][] newMax = new int[level + 1][];
+            System.arraycopy(minIndex, 0, newMin, 0, minIndex.length);
+            System.arraycopy(maxIndex, 0, newMax, 0, maxIndex.length);
+            for (int l = minIndex.length; l <= level; l++) {
+                newMin[l] = new int[0];
+                newMax[l] = new int[0];
+            }
+            minIndex = newMin;
+            maxIndex = newMax;
+        }
+        if (minIndex[level].length < blocks) {
+            int capacity = Math.max(blocks, minIndex[level].length + (minIndex[level].length >> 1) + 16);
+            int[] newMin = new int[capacity];
+            int[] newMax = new int[capacity];
+            System.arraycopy(minIndex[level], 0, newMin, 0, minIndex[level].length);
+            System.arraycopy(maxIndex[level], 0, newMax, 0, maxIndex[level].length);
+            minIndex[level] = newMin;
+            maxIndex[level] = newMax;
+        }
+    }
+
+}
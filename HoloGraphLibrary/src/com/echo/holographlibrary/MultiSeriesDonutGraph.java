@@ -30,6 +30,7 @@ import android.graphics.Paint;
 import android.graphics.Path;
 import android.graphics.Path.Direction;
 import android.graphics.Point;
+import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.Region;
 import android.util.AttributeSet;
@@ -54,6 +55,36 @@ public class MultiSeriesDonutGraph extends View
     private float thickness = 200;
     private float innerRadius = 0;
     private OnSeriesSliceClickedListener listener;
+    private boolean shouldUpdate = true;
+    private BackgroundRenderer renderer;
+    private DonutFrame frame;
+    private DonutFrame drawnFrame;
+    private final UpdateScheduler scheduler = new UpdateScheduler(this);
+    private final MultiSeriesDonutSlice.OnSliceChangedListener sliceListener = new MultiSeriesDonutSlice.OnSliceChangedListener()
+    {
+        @Override
+        public void onSliceChanged(MultiSeriesDonutSlice slice, int change)
+        {
+            if (change == MultiSeriesDonutSlice.CHANGED_TITLE)
+            {
+                // Titles are not drawn.
+                return;
+            }
+            if (change == MultiSeriesDonutSlice.CHANGED_COLOR && renderer == null)
+            {
+                // Slices are drawn in place every frame and a color change
+                // moves none of them, so only this one's area has to be redrawn.
+                invalidateSlice(slice);
+                return;
+            }
+            update();
+        }
+    };
+    private boolean attached = false;
+    private final RectF sliceBounds = new RectF();
+    private final Rect dirty = new Rect();
+
+    private static final float PADDING = 2;
 
 
     public MultiSeriesDonutGraph(Context context)
@@ -66,101 +97,318 @@ public class MultiSeriesDonutGraph extends View
         super(context, attrs);
     }
 
+    /**
+     * Redraws the slices at the next frame. Calls made before that frame are
+     * coalesced into one redraw.
+     */
     public void update()
     {
-        postInvalidate();
+        shouldUpdate = true;
+        scheduler.schedule();
     }
 
-    public void onDraw(Canvas canvas)
+    /**
+     * Redraws at most {@code framesPerSecond} times a second however often the
+     * slices change. 0, the default, redraws at the display rate.
+     */
+    public void setMaxFrameRate(int framesPerSecond)
+    {
+        scheduler.setMaxFrameRate(framesPerSecond);
+    }
+
+    public int getMaxFrameRate()
     {
-        canvas.drawColor(Color.TRANSPARENT);
-        paint.reset();
-        paint.setAntiAlias(true);
-        float midX, midY, chartRadius, chartInnerRadius;
-        path.reset();
+        return scheduler.getMaxFrameRate();
+    }
+
+    /**
+     * Starts a batch of changes: {@link #update()} and the setters that call it
+     * only record that the graph needs redrawing until the matching
+     * {@link #endUpdate()}, which redraws once. Batches nest. Call both on the
+     * UI thread.
+     */
+    public void beginUpdate()
+    {
+        scheduler.beginBatch();
+    }
 
-        float padding = 2;
+    public void endUpdate()
+    {
+        scheduler.endBatch();
+    }
 
-        midX = getWidth() / 2;
-        midY = getHeight() / 2;
-        if (midX < midY)
+    public void onDraw(Canvas canvas)
+    {
+        if (renderer != null)
         {
-            chartRadius = midX;
+            if (shouldUpdate)
+            {
+                shouldUpdate = false;
+                List<List<MultiSeriesDonutSlice>> copies = new ArrayList<>(seriesList.size());
+                for (List<MultiSeriesDonutSlice> series : seriesList)
+                {
+                    List<MultiSeriesDonutSlice> seriesCopy = new ArrayList<>(series.size());
+                    for (MultiSeriesDonutSlice slice : series)
+                    {
+                        seriesCopy.add(slice.snapshot());
+                    }
+                    copies.add(seriesCopy);
+                }
+                DonutFrame next = new DonutFrame();
+                next.capture(copies);
+                renderer.submit(next, getWidth(), getHeight());
+            }
+            renderer.draw(canvas);
         }
         else
         {
-            chartRadius = midY;
+            if (frame == null)
+            {
+                frame = new DonutFrame();
+            }
+            frame.capture(seriesList);
+            frame.render(canvas);
+            frame.publish();
+        }
+
+        DonutFrame drawn = drawnFrame;
+        int seriesIndex = indexSelected.first;
+        int count = indexSelected.second;
+        if (drawn != null && seriesIndex >= 0 && seriesIndex < drawn.angles.length
+                && count >= 0 && count < drawn.angles[seriesIndex].length && listener != null)
+        {
+            float midX = drawn.midX, midY = drawn.midY;
+            float radius = drawn.radii[seriesIndex];
+            float innerRadius = drawn.innerRadii[seriesIndex];
+            float currentAngle = drawn.angles[seriesIndex][count];
+            float currentSweep = drawn.sweeps[seriesIndex][count];
+            float padding = PADDING;
+
+            path.reset();
+            paint.reset();
+            paint.setAntiAlias(true);
+            paint.setColor(Color.parseColor("#33B5E5"));
+            paint.setAlpha(100);
+
+            if (drawn.angles.length > 1)
+            {
+                path.arcTo(new RectF(midX - radius - (padding * 2), midY - radius - (padding * 2), midX + radius + (padding * 2), midY + radius + (padding * 2)), currentAngle, currentSweep + padding);
+                path.arcTo(new RectF(midX - innerRadius + (padding * 2), midY - innerRadius + (padding * 2), midX + innerRadius - (padding * 2), midY + innerRadius - (padding * 2)), currentAngle + currentSweep + padding, -(currentSweep + padding));
+                path.close();
+            }
+            else
+            {
+                path.addCircle(midX, midY, radius + padding, Direction.CW);
+            }
+
+            canvas.drawPath(path, paint);
         }
-        chartRadius -= padding;
-        if (useThickness)
+    }
+
+    /**
+     * Draws the slices on a background thread from a copy of them taken at
+     * each {@link #update()}, and only copies the latest finished frame to the
+     * screen. Call {@link #update()} after changing a slice. Frames made stale
+     * by newer data are dropped.
+     */
+    public void setBackgroundRendering(boolean enabled)
+    {
+        if (enabled == (renderer != null)) return;
+        if (enabled)
         {
-            chartInnerRadius = chartRadius - thickness;
+            renderer = new BackgroundRenderer(this);
         }
         else
         {
-            chartInnerRadius = innerRadius;
+            renderer.release();
+            renderer = null;
+        }
+        indexSelected = Pair.create(-1, -1);
+        update();
+    }
+
+    public boolean isBackgroundRendering()
+    {
+        return renderer != null;
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh)
+    {
+        super.onSizeChanged(w, h, oldw, oldh);
+        shouldUpdate = true;
+    }
+
+    @Override
+    protected void onAttachedToWindow()
+    {
+        super.onAttachedToWindow();
+        attached = true;
+        for (List<MultiSeriesDonutSlice> series : seriesList)
+        {
+            for (MultiSeriesDonutSlice slice : series)
+            {
+                slice.addOnSliceChangedListener(sliceListener);
+            }
         }
+        // Changes made while detached went unheard.
+        update();
+    }
 
-        float radialPadding = 2 * padding;
-        float totalRadialPadding = (seriesList.size() - 1) * radialPadding;
-        float sliceRadialThickness = (chartRadius - chartInnerRadius - totalRadialPadding) / seriesList.size();
+    @Override
+    protected void onDetachedFromWindow()
+    {
+        super.onDetachedFromWindow();
+        attached = false;
+        // The slices may outlive the view; they must not keep it reachable.
+        for (List<MultiSeriesDonutSlice> series : seriesList)
+        {
+            for (MultiSeriesDonutSlice slice : series)
+            {
+                slice.removeOnSliceChangedListener(sliceListener);
+            }
+        }
+        scheduler.cancel();
+        if (renderer != null)
+        {
+            renderer.release();
+            shouldUpdate = true;
+        }
+    }
 
-        for (int seriesIndex = 0; seriesIndex < seriesList.size(); seriesIndex++)
+    /**
+     * One rendering of every series, with the shape of each slice worked out
+     * while drawing it. Everything it reads from the graph is captured on the
+     * UI thread, so a frame over copied slices can be rendered in the
+     * background.
+     */
+    private final class DonutFrame implements BackgroundRenderer.Frame
+    {
+        private List<List<MultiSeriesDonutSlice>> seriesList;
+        private List<List<MultiSeriesDonutSlice>> source;
+        private int width, height;
+        private boolean useThickness;
+        private float thickness, innerRadius;
+
+        float midX, midY;
+        float[] radii = new float[0];
+        float[] innerRadii = new float[0];
+        float[][] angles = new float[0][];
+        float[][] sweeps = new float[0][];
+        private Path[][] paths = new Path[0][];
+        private Region[][] regions = new Region[0][];
+        private final Paint paint = new Paint();
+
+        void capture(List<List<MultiSeriesDonutSlice>> seriesList)
         {
-            List<MultiSeriesDonutSlice> series = seriesList.get(seriesIndex);
+            this.seriesList = seriesList;
+            this.source = MultiSeriesDonutGraph.this.seriesList;
+            width = getWidth();
+            height = getHeight();
+            useThickness = MultiSeriesDonutGraph.this.useThickness;
+            thickness = MultiSeriesDonutGraph.this.thickness;
+            innerRadius = MultiSeriesDonutGraph.this.innerRadius;
+        }
 
-            float radius = chartRadius - (sliceRadialThickness + radialPadding) * seriesIndex;
-            float innerRadius = radius - sliceRadialThickness;
+        @Override
+        public void render(Canvas canvas)
+        {
+            canvas.drawColor(Color.TRANSPARENT);
+            paint.reset();
+            paint.setAntiAlias(true);
+            float chartRadius, chartInnerRadius;
 
-            float currentAngle = 270;
-            float currentSweep;
-            int totalValue = 0;
+            float padding = PADDING;
 
-            for (MultiSeriesDonutSlice slice : series)
+            midX = width / 2;
+            midY = height / 2;
+            if (midX < midY)
+            {
+                chartRadius = midX;
+            }
+            else
+            {
+                chartRadius = midY;
+            }
+            chartRadius -= padding;
+            if (useThickness)
+            {
+                chartInnerRadius = chartRadius - thickness;
+            }
+            else
             {
-                totalValue += slice.getValue();
+                chartInnerRadius = innerRadius;
             }
 
-            int count = 0;
-            for (MultiSeriesDonutSlice slice : series)
+            float radialPadding = 2 * padding;
+            float totalRadialPadding = (seriesList.size() - 1) * radialPadding;
+            float sliceRadialThickness = (chartRadius - chartInnerRadius - totalRadialPadding) / seriesList.size();
+
+            radii = new float[seriesList.size()];
+            innerRadii = new float[seriesList.size()];
+            angles = new float[seriesList.size()][];
+            sweeps = new float[seriesList.size()][];
+            paths = new Path[seriesList.size()][];
+            regions = new Region[seriesList.size()][];
+
+            for (int seriesIndex = 0; seriesIndex < seriesList.size(); seriesIndex++)
             {
-                Path p = new Path();
-                paint.setColor(slice.getColor());
-                currentSweep = (slice.getValue() / totalValue) * (360);
-                p.arcTo(new RectF(midX - radius, midY - radius, midX + radius, midY + radius), currentAngle + padding, currentSweep - padding);
-                p.arcTo(new RectF(midX - innerRadius, midY - innerRadius, midX + innerRadius, midY + innerRadius), (currentAngle + padding) + (currentSweep - padding), -(currentSweep - padding));
-                p.close();
-
-                slice.setPath(p);
-                slice.setRegion(new Region((int) (midX - radius), (int) (midY - radius), (int) (midX + radius), (int) (midY + radius)));
-                canvas.drawPath(p, paint);
-
-                if (indexSelected.first == seriesIndex && indexSelected.second == count && listener != null)
+                List<MultiSeriesDonutSlice> series = seriesList.get(seriesIndex);
+
+                float radius = chartRadius - (sliceRadialThickness + radialPadding) * seriesIndex;
+                float innerRadius = radius - sliceRadialThickness;
+                radii[seriesIndex] = radius;
+                innerRadii[seriesIndex] = innerRadius;
+                angles[seriesIndex] = new float[series.size()];
+                sweeps[seriesIndex] = new float[series.size()];
+                paths[seriesIndex] = new Path[series.size()];
+                regions[seriesIndex] = new Region[series.size()];
+
+                float currentAngle = 270;
+                float currentSweep;
+                int totalValue = 0;
+
+                for (MultiSeriesDonutSlice slice : series)
                 {
-                    path.reset();
+                    totalValue += slice.getValue();
+                }
+
+                int count = 0;
+                for (MultiSeriesDonutSlice slice : series)
+                {
+                    Path p = new Path();
                     paint.setColor(slice.getColor());
-                    paint.setColor(Color.parseColor("#33B5E5"));
-                    paint.setAlpha(100);
+                    currentSweep = (slice.getValue() / totalValue) * (360);
+                    p.arcTo(new RectF(midX - radius, midY - radius, midX + radius, midY + radius), currentAngle + padding, currentSweep - padding);
+                    p.arcTo(new RectF(midX - innerRadius, midY - innerRadius, midX + innerRadius, midY + innerRadius), (currentAngle + padding) + (currentSweep - padding), -(currentSweep - padding));
+                    p.close();
 
-                    if (seriesList.size() > 1)
-                    {
-                        path.arcTo(new RectF(midX - radius - (padding * 2), midY - radius - (padding * 2), midX + radius + (padding * 2), midY + radius + (padding * 2)), currentAngle, currentSweep + padding);
-                        path.arcTo(new RectF(midX - innerRadius + (padding * 2), midY - innerRadius + (padding * 2), midX + innerRadius - (padding * 2), midY + innerRadius - (padding * 2)), currentAngle + currentSweep + padding, -(currentSweep + padding));
-                        path.close();
-                    }
-                    else
-                    {
-                        path.addCircle(midX, midY, radius + padding, Direction.CW);
-                    }
+                    paths[seriesIndex][count] = p;
+                    regions[seriesIndex][count] = new Region((int) (midX - radius), (int) (midY - radius), (int) (midX + radius), (int) (midY + radius));
+                    angles[seriesIndex][count] = currentAngle;
+                    sweeps[seriesIndex][count] = currentSweep;
+                    canvas.drawPath(p, paint);
 
-                    canvas.drawPath(path, paint);
-                    paint.setAlpha(255);
-                }
+                    currentAngle = currentAngle + currentSweep;
 
-                currentAngle = currentAngle + currentSweep;
+                    count++;
+                }
+            }
+        }
 
-                count++;
+        @Override
+        public void publish()
+        {
+            for (int seriesIndex = 0; seriesIndex < paths.length && seriesIndex < source.size(); seriesIndex++)
+            {
+                List<MultiSeriesDonutSlice> series = source.get(seriesIndex);
+                for (int i = 0; i < paths[seriesIndex].length && i < series.size(); i++)
+                {
+                    series.get(i).setPath(paths[seriesIndex][i]);
+                    series.get(i).setRegion(regions[seriesIndex][i]);
+                }
             }
+            drawnFrame = this;
         }
     }
 
@@ -177,7 +425,7 @@ public class MultiSeriesDonutGraph extends View
             int sliceCount = 0;
             for (MultiSeriesDonutSlice slice : series)
             {
-                if (slice.isSelectable())
+                if (slice.isSelectable() && slice.getPath() != null)
                 {
                     Region r = new Region();
                     r.setPath(slice.getPath(), slice.getRegion());
@@ -211,6 +459,23 @@ public class MultiSeriesDonutGraph extends View
         return true;
     }
 
+    /**
+     * Redraws the area {@code slice} was last drawn in.
+     */
+    private void invalidateSlice(MultiSeriesDonutSlice slice)
+    {
+        Path slicePath = slice.getPath();
+        if (slicePath == null)
+        {
+            update();
+            return;
+        }
+        slicePath.computeBounds(sliceBounds, true);
+        sliceBounds.roundOut(dirty);
+        dirty.inset(-1, -1);
+        scheduler.schedule(dirty);
+    }
+
     public List<List<MultiSeriesDonutSlice>> getSeriesList()
     {
         return seriesList;
@@ -218,8 +483,25 @@ public class MultiSeriesDonutGraph extends View
 
     public void setSeriesList(List<List<MultiSeriesDonutSlice>> seriesList)
     {
+        for (List<MultiSeriesDonutSlice> series : this.seriesList)
+        {
+            for (MultiSeriesDonutSlice slice : series)
+            {
+                slice.removeOnSliceChangedListener(sliceListener);
+            }
+        }
         this.seriesList = seriesList;
-        postInvalidate();
+        if (attached)
+        {
+            for (List<MultiSeriesDonutSlice> series : seriesList)
+            {
+                for (MultiSeriesDonutSlice slice : series)
+                {
+                    slice.addOnSliceChangedListener(sliceListener);
+                }
+            }
+        }
+        update();
     }
 
     public MultiSeriesDonutSlice getSlice(int series, int index)
@@ -234,7 +516,11 @@ public class MultiSeriesDonutGraph extends View
             seriesList.add(new ArrayList<MultiSeriesDonutSlice>());
         }
         this.seriesList.get(series).add(slice);
-        postInvalidate();
+        if (attached)
+        {
+            slice.addOnSliceChangedListener(sliceListener);
+        }
+        update();
     }
 
     public void setOnSliceClickedListener(OnSeriesSliceClickedListener listener)
@@ -246,14 +532,14 @@ public class MultiSeriesDonutGraph extends View
     {
         this.thickness = thickness;
         useThickness = true;
-        postInvalidate();
+        update();
     }
 
     public void setInnerRadius(float innerRadius)
     {
         this.innerRadius = innerRadius;
         useThickness = false;
-        postInvalidate();
+        update();
     }
 
     public void removeSlices()
@@ -262,11 +548,11 @@ public class MultiSeriesDonutGraph extends View
         {
             for (int j = seriesList.get(i).size() - 1; j >= 0; j--)
             {
-                seriesList.get(i).remove(j);
+                seriesList.get(i).remove(j).removeOnSliceChangedListener(sliceListener);
             }
             seriesList.remove(i);
         }
-        postInvalidate();
+        update();
     }
 
     public static interface OnSeriesSliceClickedListener
@@ -27,13 +27,23 @@ import android.graphics.Color;
 import android.graphics.Path;
 import android.graphics.Region;
 
+import java.util.ArrayList;
+
 public class MultiSeriesDonutSlice
 {
+    /** The value changed, which resizes every slice of the series. */
+    public static final int CHANGED_VALUE = 0;
+    /** The title changed. It is not drawn. */
+    public static final int CHANGED_TITLE = 1;
+    /** The color changed. */
+    public static final int CHANGED_COLOR = 2;
+
     private int color = Color.BLACK;
     private float value;
     private String title;
     private Path path;
     private Region region;
+    private ArrayList<OnSliceChangedListener> listeners;
     private boolean selectable = true;
 
     public String getTitle() {
@@ -42,6 +52,7 @@ public class MultiSeriesDonutSlice
 
     public void setTitle(String title) {
         this.title = title;
+        fireChanged(CHANGED_TITLE);
     }
 
     public int getColor() {
@@ -50,6 +61,7 @@ public class MultiSeriesDonutSlice
 
     public void setColor(int color) {
         this.color = color;
+        fireChanged(CHANGED_COLOR);
     }
 
     public float getValue() {
@@ -58,6 +70,7 @@ public class MultiSeriesDonutSlice
 
     public void setValue(float value) {
         this.value = value;
+        fireChanged(CHANGED_VALUE);
     }
 
     public Path getPath() {
@@ -83,4 +96,49 @@ public class MultiSeriesDonutSlice
     public void setSelectable(boolean selectable) {
         this.selectable = selectable;
     }
+
+    /**
+     * Registers {@code listener} to hear about changes to the value, title or
+     * color of this slice.
+     */
+    public void addOnSliceChangedListener(OnSliceChangedListener listener) {
+        if (listeners == null) {
+            listeners = new ArrayList<OnSliceChangedListener>(1);
+        }
+        listeners.add(listener);
+    }
+
+    public void removeOnSliceChangedListener(OnSliceChangedListener listener) {
+        if (listeners != null) {
+            listeners.remove(listener);
+        }
+    }
+
+    private void fireChanged(int change) {
+        if (listeners == null) return;
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).onSliceChanged(this, change);
+        }
+    }
+
+    /**
+     * Returns a copy of the value and color that can be drawn on another
+     * thread while this slice keeps changing.
+     */
+    MultiSeriesDonutSlice snapshot() {
+        MultiSeriesDonutSlice copy = new MultiSeriesDonutSlice();
+        copy.color = color;
+        copy.value = value;
+        copy.title = title;
+        copy.selectable = selectable;
+        return copy;
+    }
+
+    public interface OnSliceChangedListener {
+        /**
+         * @param change what changed: {@link #CHANGED_VALUE},
+         *               {@link #CHANGED_TITLE} or {@link #CHANGED_COLOR}
+         */
+        void onSliceChanged(MultiSeriesDonutSlice slice, int change);
+    }
 }
@@ -41,6 +41,32 @@ public class PieGraph extends View {
 	private int indexSelected = -1;
 	private int thickness = 50;
 	private OnSliceClickedListener listener;
+	private boolean shouldUpdate = true;
+	private BackgroundRenderer renderer;
+	private PieFrame frame;
+	private PieFrame drawnFrame;
+	private final UpdateScheduler scheduler = new UpdateScheduler(this);
+	private final PieSlice.OnSliceChangedListener sliceListener = new PieSlice.OnSliceChangedListener() {
+		@Override
+		public void onSliceChanged(PieSlice slice, int change) {
+			if (change == PieSlice.CHANGED_TITLE) {
+				// Titles are not drawn.
+				return;
+			}
+			if (change == PieSlice.CHANGED_COLOR && renderer == null) {
+				// Slices are drawn in place every frame and a color change moves
+				// none of them, so only this one's area has to be redrawn.
+				invalidateSlice(slice);
+				return;
+			}
+			update();
+		}
+	};
+	private boolean attached = false;
+	private final RectF sliceBounds = new RectF();
+	private final Rect dirty = new Rect();
+	
+	private static final float PADDING = 2;
 	
 	
 	public PieGraph(Context context) {
@@ -50,79 +76,238 @@ public class PieGraph extends View {
 		super(context, attrs);
 	}
 
-    public void update() { postInvalidate(); }
+    /**
+     * Redraws the slices at the next frame. Calls made before that frame are
+     * coalesced into one redraw.
+     */
+    public void update() {
+        shouldUpdate = true;
+        scheduler.schedule();
+    }
+
+    /**
+     * Redraws at most {@code framesPerSecond} times a second however often the
+     * slices change. 0, the default, redraws at the display rate.
+     */
+    public void setMaxFrameRate(int framesPerSecond) {
+        scheduler.setMaxFrameRate(framesPerSecond);
+    }
+
+    public int getMaxFrameRate() {
+        return scheduler.getMaxFrameRate();
+    }
+
+	/**
+	 * Starts a batch of changes: {@link #update()} and the setters that call it
+	 * only record that the graph needs redrawing until the matching
+	 * {@link #endUpdate()}, which redraws once. Batches nest. Call both on the
+	 * UI thread.
+	 */
+	public void beginUpdate() {
+		scheduler.beginBatch();
+	}
+
+	public void endUpdate() {
+		scheduler.endBatch();
+	}
 
 	public void onDraw(Canvas canvas) {
-		canvas.drawColor(Color.TRANSPARENT);
-		paint.reset();
-		paint.setAntiAlias(true);
-		float midX, midY, radius, innerRadius;
-		path.reset();
-		
-		float currentAngle = 270;
-        float currentSweep;
-        int totalValue = 0;
-		float padding = 2;
-		
-		midX = getWidth()/2;
-		midY = getHeight()/2;
-		if (midX < midY){
-			radius = midX;
+		if (renderer != null) {
+			if (shouldUpdate) {
+				shouldUpdate = false;
+				ArrayList<PieSlice> copies = new ArrayList<PieSlice>(slices.size());
+				for (PieSlice slice : slices){
+					copies.add(slice.snapshot());
+				}
+				PieFrame next = new PieFrame();
+				next.capture(copies);
+				renderer.submit(next, getWidth(), getHeight());
+			}
+			renderer.draw(canvas);
 		} else {
-			radius = midY;
+			if (frame == null) {
+				frame = new PieFrame();
+			}
+			frame.capture(slices);
+			frame.render(canvas);
+			frame.publish();
 		}
-		radius -= padding;
-		innerRadius = radius - thickness;
 		
+		PieFrame drawn = drawnFrame;
+		if (drawn != null && indexSelected >= 0 && indexSelected < drawn.sliceCount && listener != null){
+			float midX = drawn.midX, midY = drawn.midY, radius = drawn.radius, innerRadius = drawn.innerRadius;
+			float padding = PADDING;
+			float currentAngle = drawn.angles[indexSelected];
+			float currentSweep = drawn.sweeps[indexSelected];
+			path.reset();
+			paint.reset();
+			paint.setAntiAlias(true);
+			paint.setColor(Color.parseColor("#33B5E5"));
+			paint.setAlpha(100);
+			
+			if (drawn.sliceCount > 1) {
+				path.arcTo(new RectF(midX-radius-(padding*2), midY-radius-(padding*2), midX+radius+(padding*2), midY+radius+(padding*2)), currentAngle, currentSweep+padding);
+				path.arcTo(new RectF(midX-innerRadius+(padding*2), midY-innerRadius+(padding*2), midX+innerRadius-(padding*2), midY+innerRadius-(padding*2)), currentAngle + currentSweep + padding, -(currentSweep + padding));
+				path.close();
+			} else {
+				path.addCircle(midX, midY, radius+padding, Direction.CW);
+			}
+			
+			canvas.drawPath(path, paint);
+		}
+	}
+	
+	/**
+	 * Draws the slices on a background thread from a copy of them taken at each
+	 * {@link #update()}, and only copies the latest finished frame to the
+	 * screen. Call {@link #update()} after changing a slice. Frames made stale
+	 * by newer data are dropped.
+	 */
+	public void setBackgroundRendering(boolean enabled) {
+		if (enabled == (renderer != null)) return;
+		if (enabled) {
+			renderer = new BackgroundRenderer(this);
+		} else {
+			renderer.release();
+			renderer = null;
+		}
+		indexSelected = -1;
+		update();
+	}
+	public boolean isBackgroundRendering() {
+		return renderer != null;
+	}
+	
+	@Override
+	protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+		super.onSizeChanged(w, h, oldw, oldh);
+		shouldUpdate = true;
+	}
+	
+	@Override
+	protected void onAttachedToWindow() {
+		super.onAttachedToWindow();
+		attached = true;
 		for (PieSlice slice : slices){
-			totalValue += slice.getValue();
+			slice.addOnSliceChangedListener(sliceListener);
 		}
-		
-		int count = 0;
+		// Changes made while detached went unheard.
+		update();
+	}
+	
+	@Override
+	protected void onDetachedFromWindow() {
+		super.onDetachedFromWindow();
+		attached = false;
+		// The slices may outlive the view; they must not keep it reachable.
 		for (PieSlice slice : slices){
-			Path p = new Path();
-			paint.setColor(slice.getColor());
-			currentSweep = (slice.getValue()/totalValue)*(360);
-			p.arcTo(new RectF(midX-radius, midY-radius, midX+radius, midY+radius), currentAngle+padding, currentSweep - padding);
-			p.arcTo(new RectF(midX-innerRadius, midY-innerRadius, midX+innerRadius, midY+innerRadius), (currentAngle+padding) + (currentSweep - padding), -(currentSweep-padding));
-			p.close();
+			slice.removeOnSliceChangedListener(sliceListener);
+		}
+		scheduler.cancel();
+		if (renderer != null) {
+			renderer.release();
+			shouldUpdate = true;
+		}
+	}
+	
+	/**
+	 * One rendering of the slices, with the shape of each slice worked out while
+	 * drawing it. Everything it reads from the graph is captured on the UI
+	 * thread, so a frame over copied slices can be rendered in the background.
+	 */
+	private final class PieFrame implements BackgroundRenderer.Frame {
+		
+		private ArrayList<PieSlice> slices;
+		private ArrayList<PieSlice> source;
+		private int width, height, thickness;
+		
+		int sliceCount;
+		float midX, midY, radius, innerRadius;
+		float[] angles = new float[0];
+		float[] sweeps = new float[0];
+		private Path[] paths = new Path[0];
+		private Region[] regions = new Region[0];
+		private final Paint paint = new Paint();
+		
+		void capture(ArrayList<PieSlice> slices) {
+			this.slices = slices;
+			this.source = PieGraph.this.slices;
+			width = getWidth();
+			height = getHeight();
+			thickness = PieGraph.this.thickness;
+		}
+		
+		@Override
+		public void render(Canvas canvas) {
+			canvas.drawColor(Color.TRANSPARENT);
+			paint.reset();
+			paint.setAntiAlias(true);
+			
+			float currentAngle = 270;
+			float currentSweep;
+			int totalValue = 0;
+			float padding = PADDING;
+			
+			midX = width/2;
+			midY = height/2;
+			if (midX < midY){
+				radius = midX;
+			} else {
+				radius = midY;
+			}
+			radius -= padding;
+			innerRadius = radius - thickness;
+			
+			for (PieSlice slice : slices){
+				totalValue += slice.getValue();
+			}
 			
-			slice.setPath(p);
-			slice.setRegion(new Region((int)(midX-radius), (int)(midY-radius), (int)(midX+radius), (int)(midY+radius)));
-			canvas.drawPath(p, paint);
+			sliceCount = slices.size();
+			if (angles.length < sliceCount) {
+				angles = new float[sliceCount];
+				sweeps = new float[sliceCount];
+				paths = new Path[sliceCount];
+				regions = new Region[sliceCount];
+			}
 			
-			if (indexSelected == count && listener != null){
-				path.reset();
+			int count = 0;
+			for (PieSlice slice : slices){
+				Path p = new Path();
 				paint.setColor(slice.getColor());
-				paint.setColor(Color.parseColor("#33B5E5"));
-				paint.setAlpha(100);
+				currentSweep = (slice.getValue()/totalValue)*(360);
+				p.arcTo(new RectF(midX-radius, midY-radius, midX+radius, midY+radius), currentAngle+padding, currentSweep - padding);
+				p.arcTo(new RectF(midX-innerRadius, midY-innerRadius, midX+innerRadius, midY+innerRadius), (currentAngle+padding) + (currentSweep - padding), -(currentSweep-padding));
+				p.close();
 				
-				if (slices.size() > 1) {
-					path.arcTo(new RectF(midX-radius-(padding*2), midY-radius-(padding*2), midX+radius+(padding*2), midY+radius+(padding*2)), currentAngle, currentSweep+padding);
-					path.arcTo(new RectF(midX-innerRadius+(padding*2), midY-innerRadius+(padding*2), midX+innerRadius-(padding*2), midY+innerRadius-(padding*2)), currentAngle + currentSweep + padding, -(currentSweep + padding));
-					path.close();
-				} else {
-					path.addCircle(midX, midY, radius+padding, Direction.CW);
+				paths[count] = p;
+				regions[count] = new Region((int)(midX-radius), (int)(midY-radius), (int)(midX+radius), (int)(midY+radius));
+				angles[count] = currentAngle;
+				sweeps[count] = currentSweep;
+				canvas.drawPath(p, paint);
+				
+				Bitmap icon = slice.getIcon();
+				if (icon != null) {
+					double rad = 2 * Math.PI * (currentAngle + currentSweep / 2) / 360.0;
+					double left = Math.cos(rad) * (innerRadius + radius) / 2;
+					double top = Math.sin(rad) * (innerRadius + radius) / 2;
+					canvas.drawBitmap(icon, midX - icon.getWidth() / 2 + (float)left, midY - icon.getHeight() / 2 + (float)top, null);
 				}
 				
-				canvas.drawPath(path, paint);
-				paint.setAlpha(255);
-			}
-
-			Bitmap icon = slice.getIcon();
-			if (icon != null) {
-				double rad = 2 * Math.PI * (currentAngle + currentSweep / 2) / 360.0;
-				double left = Math.cos(rad) * (innerRadius + radius) / 2;
-				double top = Math.sin(rad) * (innerRadius + radius) / 2;
-				canvas.drawBitmap(icon, midX - icon.getWidth() / 2 + (float)left, midY - icon.getHeight() / 2 + (float)top, null);
+				currentAngle = currentAngle+currentSweep;
+				
+				count++;
 			}
-
-			currentAngle = currentAngle+currentSweep;
-			
-			count++;
 		}
 		
-		
+		@Override
+		public void publish() {
+			int published = Math.min(sliceCount, source.size());
+			for (int i = 0; i < published; i++){
+				source.get(i).setPath(paths[i]);
+				source.get(i).setRegion(regions[i]);
+			}
+			drawnFrame = this;
+		}
 	}
 	
 	@Override
@@ -134,6 +319,10 @@ public class PieGraph extends View {
 	    
 	    int count = 0;
 	    for (PieSlice slice : slices){
+	    	if (slice.getPath() == null) {
+	    		count++;
+	    		continue;
+	    	}
 	    	Region r = new Region();
 	    	r.setPath(slice.getPath(), slice.getRegion());
             if (r.contains(point.x, point.y) && event.getAction() == MotionEvent.ACTION_DOWN) {
@@ -159,19 +348,45 @@ public class PieGraph extends View {
 	    return true;
 	}
 	
+	/**
+	 * Redraws the area {@code slice} was last drawn in.
+	 */
+	private void invalidateSlice(PieSlice slice) {
+		Path slicePath = slice.getPath();
+		if (slicePath == null) {
+			update();
+			return;
+		}
+		slicePath.computeBounds(sliceBounds, true);
+		sliceBounds.roundOut(dirty);
+		dirty.inset(-1, -1);
+		scheduler.schedule(dirty);
+	}
+	
 	public ArrayList<PieSlice> getSlices() {
 		return slices;
 	}
 	public void setSlices(ArrayList<PieSlice> slices) {
+		for (PieSlice slice : this.slices){
+			slice.removeOnSliceChangedListener(sliceListener);
+		}
+		if (attached) {
+			for (PieSlice slice : slices){
+				slice.addOnSliceChangedListener(sliceListener);
+			}
+		}
 		this.slices = slices;
-		postInvalidate();
+		update();
 	}
 	public PieSlice getSlice(int index) {
 		return slices.get(index);
 	}
 	public void addSlice(PieSlice slice) {
 		this.slices.add(slice);
-		postInvalidate();
+		if (attached) {
+			slice.addOnSliceChangedListener(sliceListener);
+		}
+		update();
 	}
 	public void setOnSliceClickedListener(OnSliceClickedListener listener) {
 		this.listener = listener;
@@ -182,14 +397,14 @@ public class PieGraph extends View {
 	}
 	public void setThickness(int thickness) {
 		this.thickness = thickness;
-		postInvalidate();
+		update();
 	}
 	
 	public void removeSlices(){
 		for (int i = slices.size()-1; i >= 0; i--){
-			slices.remove(i);
+			slices.remove(i).removeOnSliceChangedListener(sliceListener);
 		}
-		postInvalidate();
+		update();
 	}
 
 	public static interface OnSliceClickedListener {
@@ -28,14 +28,26 @@ import android.graphics.Color;
 import android.graphics.Path;
 import android.graphics.Region;
 
+import java.util.ArrayList;
+
 public class PieSlice {
 
+    /** The value changed, which resizes every slice of the graph. */
+    public static final int CHANGED_VALUE = 0;
+    /** The title changed. It is not drawn. */
+    public static final int CHANGED_TITLE = 1;
+    /** The color changed. */
+    public static final int CHANGED_COLOR = 2;
+    /** The icon changed. */
+    public static final int CHANGED_ICON = 3;
+
     private int color = Color.BLACK;
     private float value;
     private String title;
     private Path path;
     private Region region;
     private Bitmap icon;
+    private ArrayList<OnSliceChangedListener> listeners;
 
     public String getTitle() {
         return title;
@@ -43,6 +55,7 @@ public class PieSlice {
 
     public void setTitle(String title) {
         this.title = title;
+        fireChanged(CHANGED_TITLE);
     }
 
     public int getColor() {
@@ -51,6 +64,7 @@ public class PieSlice {
 
     public void setColor(int color) {
         this.color = color;
+        fireChanged(CHANGED_COLOR);
     }
 
     public float getValue() {
@@ -59,6 +73,7 @@ public class PieSlice {
 
     public void setValue(float value) {
         this.value = value;
+        fireChanged(CHANGED_VALUE);
     }
 
     public Path getPath() {
@@ -83,6 +98,52 @@ public class PieSlice {
 
     public void setIcon(Bitmap icon) {
         this.icon = icon;
+        fireChanged(CHANGED_ICON);
+    }
+
+    /**
+     * Registers {@code listener} to hear about changes to the value, title,
+     * color or icon of this slice.
+     */
+    public void addOnSliceChangedListener(OnSliceChangedListener listener) {
+        if (listeners == null) {
+            listeners = new ArrayList<OnSliceChangedListener>(1);
+        }
+        listeners.add(listener);
+    }
+
+    public void removeOnSliceChangedListener(OnSliceChangedListener listener) {
+        if (listeners != null) {
+            listeners.remove(listener);
+        }
     }
 
+    private void fireChanged(int change) {
+        if (listeners == null) return;
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).onSliceChanged(this, change);
+        }
+    }
+
+    /**
+     * Returns a copy of the value, color and icon that can be drawn on another
+     * thread while this slice keeps changing.
+     */
+    PieSlice snapshot() {
+        PieSlice copy = new PieSlice();
+        copy.color = color;
+        copy.value = value;
+        copy.title = title;
+        copy.icon = icon;
+        return copy;
+    }
+
+    public interface OnSliceChangedListener {
+        /**
+         * @param change what changed: {@link #CHANGED_VALUE},
+         *               {@link #CHANGED_TITLE}, {@link #CHANGED_COLOR} or
+         *               {@link #CHANGED_ICON}
+         */
+        void onSliceChanged(PieSlice slice, int change);
+    }
 }
@@ -0,0 +1,158 @@
+/*
+ * 	   Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+
+package com.echo.holographlibrary;
+
+import java.util.List;
+
+/**
+ * A uniform grid over the view that buckets projected marker positions, so a
+ * touch only has to look at the markers in the cells around it. The cells are
+ * as large as the search radius, so the nearest marker within the radius is
+ * always in the 3x3 block of cells around the touch. Building is a counting
+ * sort over the markers and queries do not allocate.
+ */
+final class PointHitIndex {
+
+    private final float radius;
+    private int columns, rows;
+    private int[] cellStart = new int[1];
+    private int[] cellOf = new int[0];
+    private int[] entryLine = new int[0];
+    private int[] entryMarker = new int[0];
+    private float[] entryX = new float[0];
+    private float[] entryY = new float[0];
+    private int size;
+
+    int hitLine = -1;
+    int hitMarker = -1;
+
+    PointHitIndex(float radius) {
+        this.radius = radius;
+    }
+
+    /**
+     * Indexes the projected points of every line that shows its markers, using
+     * the geometry it was drawn with, {@code geometries[l]} for line {@code l}.
+     * Points outside the {@code width} x {@code height} view are skipped.
+     */
+    void build(List<Line> lines, LineGeometry[] geometries, int width, int height) {
+        columns = Math.max(1, (int) Math.ceil(width / radius));
+        rows = Math.max(1, (int) Math.ceil(height / radius));
+        int cells = columns * rows;
+        if (cellStart.length < cells + 1) {
+            cellStart = new int[cells + 1];
+        }
+        for (int c = 0; c <= cells; c++) {
+            cellStart[c] = 0;
+        }
+
+        int total = 0;
+        for (int l = 0; l < lines.size(); l++) {
+            if (lines.get(l).isShowingPoints()) total += geometries[l].pointCount;
+        }
+        if (cellOf.length < total) {
+            cellOf = new int[total];
+            entryLine = new int[total];
+            entryMarker = new int[total];
+            entryX = new float[total];
+            entryY = new float[total];
+        }
+
+        // First pass: count the markers in each cell.
+        int n = 0;
+        for (int l = 0; l < lines.size(); l++) {
+            if (!lines.get(l).isShowingPoints()) continue;
+            LineGeometry geometry = geometries[l];
+            for (int k = 0; k < geometry.pointCount; k++) {
+                int cell = cell(geometry.points[k * 2], geometry.points[k * 2 + 1]);
+                cellOf[n++] = cell;
+                if (cell >= 0) cellStart[cell + 1]++;
+            }
+        }
+        for (int c = 0; c < cells; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+
+        // Second pass: place them, using cellStart as the insertion cursor.
+        n = 0;
+        for (int l = 0; l < lines.size(); l++) {
+            if (!lines.get(l).isShowingPoints()) continue;
+            LineGeometry geometry = geometries[l];
+            for (int k = 0; k < geometry.pointCount; k++) {
+                int cell = cellOf[n++];
+                if (cell < 0) continue;
+                int slot = cellStart[cell]++;
+                entryLine[slot] = l;
+                entryMarker[slot] = k;
+                entryX[slot] = geometry.points[k * 2];
+                entryY[slot] = geometry.points[k * 2 + 1];
+            }
+        }
+        // The cursors now point at the end of each cell; shift them back.
+        for (int c = cells; c > 0; c--) {
+            cellStart[c] = cellStart[c - 1];
+        }
+        cellStart[0] = 0;
+        size = cellStart[cells];
+    }
+
+    void clear() {
+        size = 0;
+        columns = rows = 0;
+    }
+
+    /**
+     * Finds the marker nearest to ({@code x}, {@code y}) within the radius and
+     * stores it in {@link #hitLine} and {@link #hitMarker}.
+     */
+    boolean find(float x, float y) {
+        hitLine = -1;
+        hitMarker = -1;
+        if (size == 0) return false;
+        int column = (int) Math.floor(x / radius);
+        int row = (int) Math.floor(y / radius);
+        float nearestDistance = radius * radius;
+        for (int r = Math.max(0, row - 1); r <= Math.min(rows - 1, row + 1); r++) {
+            for (int c = Math.max(0, column - 1); c <= Math.min(columns - 1, column + 1); c++) {
+                int cell = r * columns + c;
+                for (int e = cellStart[cell]; e < cellStart[cell + 1]; e++) {
+                    float dx = entryX[e] - x;
+                    float dy = entryY[e] - y;
+                    float distance = dx * dx + dy * dy;
+                    if (distance <= nearestDistance) {
+                        nearestDistance = distance;
+                        hitLine = entryLine[e];
+                        hitMarker = entryMarker[e];
+                    }
+                }
+            }
+        }
+        return hitLine != -1;
+    }
+
+    private int cell(float x, float y) {
+        if (x < 0 || y < 0) return -1;
+        int column = (int) (x / radius);
+        int row = (int) (y / radius);
+        if (column >= columns || row >= rows) return -1;
+        return row * columns + column;
+    }
+
+}
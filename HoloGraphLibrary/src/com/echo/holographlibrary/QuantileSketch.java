@@ -0,0 +1,147 @@
+/*
+ * 	   Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+
+package com.echo.holographlibrary;
+
+/**
+ * Counts values in logarithmically sized buckets, each as wide as the
+ * relative accuracy allows, like DDSketch. Values can be removed as well as
+ * added, so the sketch can cover a sliding window.
+ * <p>
+ * A cursor stays on the bucket holding the last quantile asked for, together
+ * with the count of values below it. Adding or removing a value moves the
+ * rank by at most one, so the next query only walks from there.
+ */
+final class QuantileSketch {
+
+    private static final float MIN_VALUE = Float.MIN_NORMAL;
+    private static final int MAX_KEY = 1 << 14;
+
+    private final double gamma;
+    private final double logGamma;
+    private int[] counts = new int[0];
+    private int lowKey;
+    private int total;
+    private int cursor;
+    private int below;
+
+    QuantileSketch(double relativeAccuracy) {
+        gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        logGamma = Math.log(gamma);
+    }
+
+    void add(float value) {
+        int key = key(value);
+        if (total == 0) {
+            cursor = key;
+            below = 0;
+        }
+        ensureKey(key);
+        counts[key - lowKey]++;
+        total++;
+        if (key < cursor) below++;
+    }
+
+    void remove(float value) {
+        int key = key(value);
+        counts[key - lowKey]--;
+        total--;
+        if (key < cursor) below--;
+    }
+
+    void clear() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+        }
+        total = 0;
+    }
+
+    /**
+     * Returns a value within the relative accuracy of the {@code q} quantile
+     * of the values held, or 0 if there are none.
+     */
+    float quantile(float q) {
+        if (total == 0) return 0;
+        int rank = (int) (q * (total - 1));
+        while (below > rank) {
+            cursor--;
+            below -= count(cursor);
+        }
+        while (below + count(cursor) <= rank) {
+            below += count(cursor);
+            cursor++;
+        }
+        return value(cursor);
+    }
+
+    /**
+     * Positive values map to positive keys and negative values to negative
+     * ones, both growing with the magnitude, so keys sort like the values.
+     * Values too small to tell from zero, and NaN, map to 0.
+     */
+    private int key(float value) {
+        if (value > MIN_VALUE) {
+            return magnitudeKey(value);
+        } else if (value < -MIN_VALUE) {
+            return -magnitudeKey(-value);
+        }
+        return 0;
+    }
+
+    private int magnitudeKey(float magnitude) {
+        double key = Math.ceil(Math.log(magnitude / (double) MIN_VALUE) / logGamma);
+        return (int) Math.max(1, Math.min(MAX_KEY, key));
+    }
+
+    /**
+     * The middle of a bucket in relative terms, within the relative accuracy
+     * of anything in it.
+     */
+    private float value(int key) {
+        if (key == 0) return 0;
+        double magnitude = (double) MIN_VALUE * Math.pow(gamma, Math.abs(key)) * 2 / (1 + gamma);
+        return (float) (key > 0 ? magnitude : -magnitude);
+    }
+
+    private int count(int key) {
+        int index = key - lowKey;
+        return index >= 0 && index < counts.length ? counts[index] : 0;
+    }
+
+    private void ensureKey(int key) {
+        if (counts.length == 0) {
+            counts = new int[64];
+            lowKey = key - 32;
+            return;
+        }
+        if (key >= lowKey && key < lowKey + counts.length) return;
+        int newLow = Math.min(lowKey, key);
+        int newHigh = Math.max(lowKey + counts.length, key + 1);
+        int length = Math.max(newHigh - newLow, counts.length * 2);
+        // Keep the spare room on the side that grew.
+        if (key < lowKey) {
+            newLow = newHigh - length;
+        }
+        int[] grown = new int[length];
+        System.arraycopy(counts, 0, grown, lowKey - newLow, counts.length);
+        counts = grown;
+        lowKey = newLow;
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * 	   Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+
+package com.echo.holographlibrary;
+
+/**
+ * The lowest and highest of the last {@code window} Y values of a line, kept
+ * in monotonic queues so each new value costs O(1) amortized.
+ * {@link #getLine()} is the lowest.
+ */
+public class RollingExtremes extends LineOverlay {
+
+    private final float[] values;
+    private final int[] minQueue;
+    private final int[] maxQueue;
+    private int minHead, minSize;
+    private int maxHead, maxSize;
+    private int next;
+
+    public RollingExtremes(Line source, int window) {
+        super(source, 2);
+        if (window < 1) {
+            throw new IllegalArgumentException("window must be positive: " + window);
+        }
+        values = new float[window];
+        minQueue = new int[window];
+        maxQueue = new int[window];
+        attach();
+    }
+
+    public Line getMinLine() {
+        return getLine(0);
+    }
+
+    public Line getMaxLine() {
+        return getLine(1);
+    }
+
+    @Override
+    void reset() {
+        minHead = minSize = 0;
+        maxHead = maxSize = 0;
+        next = 0;
+    }
+
+    @Override
+    void add(float y, float[] out) {
+        int window = values.length;
+        int slot = next;
+        next = (next + 1) % window;
+        // Queues hold ring slots in arrival order, so a queue can only hold
+        // the slot about to be reused at its front, as the value leaving the
+        // window. Slots never grow, however long the line streams.
+        if (minSize > 0 && minQueue[minHead] == slot) {
+            minHead = (minHead + 1) % window;
+            minSize--;
+        }
+        if (maxSize > 0 && maxQueue[maxHead] == slot) {
+            maxHead = (maxHead + 1) % window;
+            maxSize--;
+        }
+        values[slot] = y;
+        while (minSize > 0 && values[minQueue[(minHead + minSize - 1) % window]] >= y) {
+            minSize--;
+        }
+        minQueue[(minHead + minSize++) % window] = slot;
+        while (maxSize > 0 && values[maxQueue[(maxHead + maxSize - 1) % window]] <= y) {
+            maxSize--;
+        }
+        maxQueue[(maxHead + maxSize++) % window] = slot;
+        out[0] = values[minQueue[minHead]];
+        out[1] = values[maxQueue[maxHead]];
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * 	   Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+
+package com.echo.holographlibrary;
+
+/**
+ * A quantile, such as the median or p95, of the last {@code window} Y values
+ * of a line. The values are counted in a {@link QuantileSketch} with 1%
+ * relative accuracy, which adds and removes a value in O(1) and keeps its
+ * answer up to date as the window moves instead of sorting it.
+ */
+public class RollingQuantile extends LineOverlay {
+
+    private static final double RELATIVE_ACCURACY = 0.01;
+
+    private final float[] window;
+    private final float quantile;
+    private final QuantileSketch sketch = new QuantileSketch(RELATIVE_ACCURACY);
+    private int head;
+    private int count;
+
+    /**
+     * @param quantile between 0 and 1, such as 0.95 for p95
+     */
+    public RollingQuantile(Line source, int window, float quantile) {
+        super(source, 1);
+        if (window < 1) {
+            throw new IllegalArgumentException("window must be positive: " + window);
+        }
+        if (!(quantile >= 0 && quantile <= 1)) {
+            throw new IllegalArgumentException("quantile must be between 0 and 1: " + quantile);
+        }
+        this.window = new float[window];
+        this.quantile = quantile;
+        attach();
+    }
+
+    public float getQuantile() {
+        return quantile;
+    }
+
+    @Override
+    void reset() {
+        head = 0;
+        count = 0;
+        sketch.clear();
+    }
+
+    @Override
+    void add(float y, float[] out) {
+        if (count == window.length) {
+            sketch.remove(window[head]);
+        } else {
+            count++;
+        }
+        window[head] = y;
+        head = (head + 1) % window.length;
+        sketch.add(y);
+        out[0] = sketch.quantile(quantile);
+    }
+
+}
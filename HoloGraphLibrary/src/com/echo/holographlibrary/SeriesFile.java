@@ -0,0 +1,186 @@
+/*
+ * 	   Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+
+package com.echo.holographlibrary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A series file written by {@link SeriesFileWriter}, mapped into memory. The
+ * lines it hands out read the mapped columns directly, so opening even a
+ * file of millions of points takes no parsing and no copy on the heap.
+ * <p>
+ * The file is little-endian: a header, then an X column of floats or longs,
+ * then one float column per series, each starting on an 8-byte boundary.
+ * <pre>
+ *  0  int    magic, "HGSF"
+ *  4  int    version, 1
+ *  8  int    point count
+ * 12  int    series count
+ * 16  int    flags: {@link #FLAG_LONG_X}, {@link #FLAG_SORTED_X}
+ * 20  int    reserved
+ * 24  long   X origin, subtracted from long X values
+ * 32  float  lowest X, highest X, both relative to the origin
+ * 40  float  lowest Y, highest Y of each series
+ * </pre>
+ */
+public final class SeriesFile {
+
+    static final int MAGIC = 0x46534748;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 40;
+
+    /**
+     * X values are stored as longs, such as timestamps in milliseconds, and
+     * drawn relative to {@link #getXOrigin()} so they keep their precision as
+     * floats.
+     */
+    public static final int FLAG_LONG_X = 1;
+
+    /**
+     * X values never decrease from one point to the next.
+     */
+    public static final int FLAG_SORTED_X = 2;
+
+    private final int size;
+    private final int seriesCount;
+    private final int flags;
+    private final long xOrigin;
+    private final float minX, maxX;
+    private final float[] minY, maxY;
+    private final FloatBuffer floatXs;
+    private final LongBuffer longXs;
+    private final FloatBuffer[] ys;
+
+    private SeriesFile(MappedByteBuffer buffer, String name) throws IOException {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a series file: " + name);
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported series file version " + buffer.getInt(4) + ": " + name);
+        }
+        size = buffer.getInt(8);
+        seriesCount = buffer.getInt(12);
+        flags = buffer.getInt(16);
+        xOrigin = buffer.getLong(24);
+        minX = buffer.getFloat(32);
+        maxX = buffer.getFloat(36);
+        if (size < 0 || seriesCount < 0) {
+            throw new IOException("Corrupt series file header: " + name);
+        }
+        int xWidth = (flags & FLAG_LONG_X) != 0 ? 8 : 4;
+        long offset = dataOffset(seriesCount);
+        long end = offset + align((long) size * xWidth) + seriesCount * align((long) size * 4);
+        if (buffer.capacity() < end) {
+            throw new IOException("Truncated series file, " + buffer.capacity() + " of " + end + " bytes: " + name);
+        }
+
+        minY = new float[seriesCount];
+        maxY = new float[seriesCount];
+        for (int i = 0; i < seriesCount; i++) {
+            minY[i] = buffer.getFloat(HEADER_SIZE + i * 8);
+            maxY[i] = buffer.getFloat(HEADER_SIZE + i * 8 + 4);
+        }
+        if (xWidth == 8) {
+            longXs = column(buffer, offset).asLongBuffer();
+            floatXs = null;
+        } else {
+            floatXs = column(buffer, offset).asFloatBuffer();
+            longXs = null;
+        }
+        offset += align((long) size * xWidth);
+        ys = new FloatBuffer[seriesCount];
+        for (int i = 0; i < seriesCount; i++) {
+            ys[i] = column(buffer, offset).asFloatBuffer();
+            offset += align((long) size * 4);
+        }
+    }
+
+    /**
+     * Maps {@code file} read-only. The mapping outlives the file descriptor,
+     * which is closed before returning, and is released once nothing refers
+     * to this object or its lines any more.
+     */
+    public static SeriesFile open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            return new SeriesFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), file.getPath());
+        } finally {
+            raf.close();
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getSeriesCount() {
+        return seriesCount;
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
+    /**
+     * The value subtracted from long X values, usually the first of them.
+     * Zero for float X values.
+     */
+    public long getXOrigin() {
+        return xOrigin;
+    }
+
+    /**
+     * Returns a read-only line that draws series {@code series} straight
+     * from the mapped file. Every call returns a new line, so the same
+     * series can be shown by several graphs.
+     */
+    public MappedLine getLine(int series) {
+        if (series < 0 || series >= seriesCount) {
+            throw new IndexOutOfBoundsException("Series: " + series + ", Count: " + seriesCount);
+        }
+        return new MappedLine(floatXs, longXs, xOrigin, ys[series], size, (flags & FLAG_SORTED_X) != 0,
+                minX, maxX, minY[series], maxY[series]);
+    }
+
+    static long dataOffset(int seriesCount) {
+        return align(HEADER_SIZE + seriesCount * 8L);
+    }
+
+    static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    private static ByteBuffer column(ByteBuffer buffer, long offset) {
+        ByteBuffer column = buffer.duplicate();
+        column.position((int) offset);
+        return column.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+}
@@ -0,0 +1,240 @@
+/*
+ * 	   Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+
+package com.echo.holographlibrary;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes points one row at a time to a {@link SeriesFile}. Each column is
+ * buffered into a temporary file next to the target, and {@link #close()}
+ * writes the header and joins the columns, so the point count does not have
+ * to be known up front.
+ */
+public final class SeriesFileWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private final int seriesCount;
+    private final boolean longX;
+    private final File[] columnFiles;
+    private final RandomAccessFile[] columns;
+    private final ByteBuffer[] buffers;
+    private final float[] minY, maxY;
+    private int size;
+    private boolean sortedX = true;
+    private long xOrigin;
+    private float minX, maxX;
+    private float lastX;
+    private boolean closed;
+
+    /**
+     * @param seriesCount the number of Y values in each row
+     * @param longX whether X values are longs, such as timestamps, rather
+     *              than floats
+     */
+    public SeriesFileWriter(File file, int seriesCount, boolean longX) throws IOException {
+        if (seriesCount < 1) {
+            throw new IllegalArgumentException("seriesCount must be positive: " + seriesCount);
+        }
+        this.file = file;
+        this.seriesCount = seriesCount;
+        this.longX = longX;
+        this.minY = new float[seriesCount];
+        this.maxY = new float[seriesCount];
+        columnFiles = new File[seriesCount + 1];
+        columns = new RandomAccessFile[seriesCount + 1];
+        buffers = new ByteBuffer[seriesCount + 1];
+        try {
+            for (int i = 0; i <= seriesCount; i++) {
+                columnFiles[i] = File.createTempFile(file.getName(), ".col" + i, file.getAbsoluteFile().getParentFile());
+                columns[i] = new RandomAccessFile(columnFiles[i], "rw");
+                buffers[i] = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            }
+        } catch (IOException e) {
+            discard();
+            throw e;
+        }
+    }
+
+    /**
+     * Appends a row with a float X. Only for writers created without
+     * {@code longX}.
+     */
+    public void append(float x, float[] ys) throws IOException {
+        if (longX) {
+            throw new IllegalStateException("This writer stores long X values");
+        }
+        checkRow(ys);
+        put(0).putFloat(x);
+        appendX(x);
+        appendYs(ys);
+    }
+
+    /**
+     * Appends a row with a long X. Only for writers created with
+     * {@code longX}; the first X becomes the origin of the file.
+     */
+    public void append(long x, float[] ys) throws IOException {
+        if (!longX) {
+            throw new IllegalStateException("This writer stores float X values");
+        }
+        checkRow(ys);
+        if (size == 0) {
+            xOrigin = x;
+        }
+        put(0).putLong(x);
+        appendX((float) (x - xOrigin));
+        appendYs(ys);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Writes the file and deletes the temporary columns. The writer cannot be
+     * used afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        RandomAccessFile out = null;
+        try {
+            for (int i = 0; i <= seriesCount; i++) {
+                flush(i);
+            }
+            out = new RandomAccessFile(file, "rw");
+            out.setLength(0);
+            FileChannel channel = out.getChannel();
+            ByteBuffer header = ByteBuffer.allocate((int) SeriesFile.dataOffset(seriesCount)).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(SeriesFile.MAGIC);
+            header.putInt(SeriesFile.VERSION);
+            header.putInt(size);
+            header.putInt(seriesCount);
+            header.putInt((longX ? SeriesFile.FLAG_LONG_X : 0) | (sortedX ? SeriesFile.FLAG_SORTED_X : 0));
+            header.putInt(0);
+            header.putLong(xOrigin);
+            header.putFloat(minX);
+            header.putFloat(maxX);
+            for (int i = 0; i < seriesCount; i++) {
+                header.putFloat(minY[i]);
+                header.putFloat(maxY[i]);
+            }
+            header.clear();
+            write(channel, header);
+            for (int i = 0; i <= seriesCount; i++) {
+                FileChannel column = columns[i].getChannel();
+                long length = column.size();
+                for (long done = 0; done < length; ) {
+                    done += column.transferTo(done, length - done, channel);
+                }
+                long padding = SeriesFile.align(length) - length;
+                if (padding > 0) {
+                    write(channel, ByteBuffer.allocate((int) padding));
+                }
+            }
+        } finally {
+            if (out != null) {
+                out.close();
+            }
+            discard();
+        }
+    }
+
+    private void checkRow(float[] ys) {
+        if (closed) {
+            throw new IllegalStateException("Writer is closed");
+        }
+        if (ys.length != seriesCount) {
+            throw new IllegalArgumentException("Expected " + seriesCount + " Y values, got " + ys.length);
+        }
+    }
+
+    private void appendX(float x) {
+        if (size == 0) {
+            minX = maxX = x;
+        } else {
+            if (x < lastX) sortedX = false;
+            if (x < minX) minX = x;
+            if (x > maxX) maxX = x;
+        }
+        lastX = x;
+    }
+
+    private void appendYs(float[] ys) throws IOException {
+        for (int i = 0; i < seriesCount; i++) {
+            float y = ys[i];
+            put(i + 1).putFloat(y);
+            if (size == 0) {
+                minY[i] = maxY[i] = y;
+            } else {
+                if (y < minY[i]) minY[i] = y;
+                if (y > maxY[i]) maxY[i] = y;
+            }
+        }
+        size++;
+    }
+
+    /**
+     * Returns the buffer of column {@code column} with room for a long.
+     */
+    private ByteBuffer put(int column) throws IOException {
+        if (buffers[column].remaining() < 8) {
+            flush(column);
+        }
+        return buffers[column];
+    }
+
+    private void flush(int column) throws IOException {
+        ByteBuffer buffer = buffers[column];
+        buffer.flip();
+        write(columns[column].getChannel(), buffer);
+        buffer.clear();
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void discard() {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i] != null) {
+                try {
+                    columns[i].close();
+                } catch (IOException ignored) {
+                }
+            }
+            if (columnFiles[i] != null) {
+                columnFiles[i].delete();
+            }
+        }
+    }
+
+}
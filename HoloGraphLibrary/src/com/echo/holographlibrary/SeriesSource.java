@@ -0,0 +1,42 @@
+/*
+ * 	   Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+
+package com.echo.holographlibrary;
+
+/**
+ * Points kept outside the heap, in a database or a file, that a
+ * {@link SourceLine} reads one page at a time. The points must be in order of
+ * increasing X, so the part on screen can be found without reading the rest.
+ */
+public interface SeriesSource {
+
+    /**
+     * The number of points. A {@link SourceLine} only reads it again when
+     * {@link SourceLine#refresh()} is called.
+     */
+    int getSize();
+
+    /**
+     * Copies the X and Y values of the points in [{@code from}, {@code to}) to
+     * {@code xs} and {@code ys}, starting at {@code offset}. Called on
+     * whichever thread draws the line.
+     */
+    void read(int from, int to, float[] xs, float[] ys, int offset);
+
+}
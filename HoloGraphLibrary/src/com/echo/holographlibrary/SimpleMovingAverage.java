@@ -0,0 +1,66 @@
+/*
+ * 	   Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+
+package com.echo.holographlibrary;
+
+/**
+ * The mean of the last {@code window} Y values of a line. The first points
+ * average over the values seen so far.
+ */
+public class SimpleMovingAverage extends LineOverlay {
+
+    private final float[] window;
+    private int head;
+    private int count;
+    private double sum;
+
+    public SimpleMovingAverage(Line source, int window) {
+        super(source, 1);
+        if (window < 1) {
+            throw new IllegalArgumentException("window must be positive: " + window);
+        }
+        this.window = new float[window];
+        attach();
+    }
+
+    public int getWindow() {
+        return window.length;
+    }
+
+    @Override
+    void reset() {
+        head = 0;
+        count = 0;
+        sum = 0;
+    }
+
+    @Override
+    void add(float y, float[] out) {
+        if (count == window.length) {
+            sum -= window[head];
+        } else {
+            count++;
+        }
+        window[head] = y;
+        head = (head + 1) % window.length;
+        sum += y;
+        out[0] = (float) (sum / count);
+    }
+
+}
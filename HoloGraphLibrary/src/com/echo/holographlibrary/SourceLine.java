@@ -0,0 +1,686 @@
+/*
+ * 	   Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+
+package com.echo.holographlibrary;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A read-only {@link Line} over a {@link SeriesSource}. Points are read a page
+ * at a time and only the most recently used pages stay in memory, so a line
+ * of millions of points costs a few megabytes of heap. It is added to a
+ * {@link LineGraph} like any other line.
+ * <p>
+ * Each block of {@code 1 << BLOCK_SHIFT} points read is also summed up by its
+ * first, lowest, highest and last point, which is all a zoomed-out frame
+ * draws. Those summaries and the {@link MinMaxPyramid} over them are kept for
+ * the whole line, at about a quarter of a byte per point; they are filled by
+ * reading the source once, the first time the whole line is drawn or its Y
+ * bounds are asked for, unless the source's bounds were given with
+ * {@link #setYBounds(float, float)}. After that, only zooming in past one
+ * block per column reads pages again.
+ * <p>
+ * For background rendering the graph draws a {@link Snapshot} of the first
+ * points, which reads through to the line rather than copying it, so
+ * everything that reads the line is synchronized.
+ */
+public class SourceLine extends Line {
+
+    static final int BLOCK_SHIFT = 8;
+
+    private static final int DEFAULT_PAGE_SIZE = 4096;
+    private static final int DEFAULT_MAX_PAGES = 64;
+
+    private final SeriesSource source;
+    private final int pageSize;
+    private final LinkedHashMap<Integer, Page> pages;
+    private final float[] range = new float[2];
+    private Page lastPage;
+    private Page spare;
+    private int size;
+    private int modCount;
+    private int rewriteCount;
+
+    // The first, lowest, highest and last point of every block, four slots per
+    // block. The index is -1 until the block has been read.
+    private int[] overviewIndex = new int[0];
+    private float[] overviewX = new float[0];
+    private float[] overviewY = new float[0];
+    private int summarized;
+
+    // Found on first use or given by the caller, then widened on refresh().
+    private boolean hasYBounds;
+    private float minY, maxY;
+
+    /**
+     * Keeps up to 64 pages of 4096 points, 2 MB in all.
+     */
+    public SourceLine(SeriesSource source) {
+        this(source, DEFAULT_PAGE_SIZE, DEFAULT_MAX_PAGES);
+    }
+
+    /**
+     * @param pageSize the number of points read at once, a multiple of 256
+     * @param maxPages the number of pages kept in memory
+     */
+    public SourceLine(SeriesSource source, int pageSize, final int maxPages) {
+        if (pageSize <= 0 || pageSize % (1 << BLOCK_SHIFT) != 0) {
+            throw new IllegalArgumentException("pageSize must be a positive multiple of " + (1 << BLOCK_SHIFT) + ": " + pageSize);
+        }
+        if (maxPages < 1) {
+            throw new IllegalArgumentException("maxPages must be positive: " + maxPages);
+        }
+        this.source = source;
+        this.pageSize = pageSize;
+        this.pages = new LinkedHashMap<Integer, Page>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Page> eldest) {
+                if (size() <= maxPages) return false;
+                spare = eldest.getValue();
+                if (lastPage == spare) {
+                    lastPage = null;
+                }
+                return true;
+            }
+        };
+        super.setLevelOfDetail(true);
+        size = source.getSize();
+        ensureOverview(size);
+    }
+
+    public SeriesSource getSource() {
+        return source;
+    }
+
+    /**
+     * Sets the Y bounds of the points in the source, for a source that knows
+     * them without being read, from a file header or a database aggregate.
+     * Otherwise the first call to {@link #getMinY()} or {@link #getMaxY()}
+     * reads every page. Points picked up by {@link #refresh()} widen them;
+     * {@link #reload()} forgets them.
+     */
+    public synchronized void setYBounds(float minY, float maxY) {
+        if (!(minY <= maxY)) {
+            throw new IllegalArgumentException("minY must not be greater than maxY");
+        }
+        this.minY = minY;
+        this.maxY = maxY;
+        hasYBounds = true;
+    }
+
+    /**
+     * Picks up points appended to the source since the line was created or
+     * last refreshed. If the source shrank, everything read is dropped, as
+     * with {@link #reload()}.
+     */
+    public void refresh() {
+        int oldSize, newSize;
+        synchronized (this) {
+            oldSize = size;
+            newSize = source.getSize();
+            if (newSize == oldSize) return;
+            if (newSize < oldSize) {
+                dropAll();
+            }
+            size = newSize;
+            modCount++;
+            ensureOverview(newSize);
+            if (newSize < oldSize) {
+                rewriteCount = modCount;
+                getPyramid().invalidate();
+            } else {
+                if (oldSize > 0) {
+                    extendTail(oldSize - 1);
+                }
+                for (int i = oldSize; i < newSize; i++) {
+                    getPyramid().append(this, i);
+                    if (hasYBounds) {
+                        float y = getY(i);
+                        if (y < minY) minY = y;
+                        if (y > maxY) maxY = y;
+                    }
+                }
+            }
+        }
+        if (newSize < oldSize) {
+            firePointsRemoved(newSize, oldSize - newSize);
+        } else {
+            firePointsAppended(oldSize, newSize - oldSize);
+        }
+    }
+
+    /**
+     * Drops every page and summary read, for when points already read changed
+     * in the source. Reported to listeners as every point being removed and
+     * added again.
+     */
+    public void reload() {
+        int oldSize, newSize;
+        synchronized (this) {
+            oldSize = size;
+            dropAll();
+            newSize = size = source.getSize();
+            modCount++;
+            rewriteCount = modCount;
+            ensureOverview(newSize);
+            getPyramid().invalidate();
+        }
+        if (oldSize > 0) {
+            firePointsRemoved(0, oldSize);
+        }
+        if (newSize > 0) {
+            firePointsAppended(0, newSize);
+        }
+    }
+
+    @Override
+    public synchronized float getX(int index) {
+        Page page = lastPage;
+        if (page == null || index < page.start || index >= page.start + page.count) {
+            int slot = overviewSlot(index);
+            if (slot >= 0) return overviewX[slot];
+            page = page(index);
+        }
+        return page.xs[index - page.start];
+    }
+
+    @Override
+    public synchronized float getY(int index) {
+        Page page = lastPage;
+        if (page == null || index < page.start || index >= page.start + page.count) {
+            int slot = overviewSlot(index);
+            if (slot >= 0) return overviewY[slot];
+            page = page(index);
+        }
+        return page.ys[index - page.start];
+    }
+
+    @Override
+    public synchronized int getSize() {
+        return size;
+    }
+
+    @Override
+    public String getLabel(int index) {
+        checkIndex(index);
+        return null;
+    }
+
+    @Override
+    public void setLabel(int index, String label) {
+        if (label != null) {
+            throw new UnsupportedOperationException("SourceLine does not store labels");
+        }
+    }
+
+    @Override
+    public void addPoint(float x, float y) {
+        throw new UnsupportedOperationException("SourceLine is read-only; append to its source and call refresh()");
+    }
+
+    @Override
+    public void addPoints(float[] xs, float[] ys, int off, int len) {
+        throw new UnsupportedOperationException("SourceLine is read-only; append to its source and call refresh()");
+    }
+
+    @Override
+    public void removePoint(int index) {
+        throw new UnsupportedOperationException("SourceLine is read-only");
+    }
+
+    @Override
+    public void setX(int index, float x) {
+        throw new UnsupportedOperationException("SourceLine is read-only");
+    }
+
+    @Override
+    public void setY(int index, float y) {
+        throw new UnsupportedOperationException("SourceLine is read-only");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("SourceLine is read-only");
+    }
+
+    /**
+     * Level of detail cannot be turned off: it is what keeps zoomed-out frames
+     * from reading every page.
+     */
+    @Override
+    public void setLevelOfDetail(boolean enabled) {
+        if (!enabled) {
+            throw new UnsupportedOperationException("SourceLine always keeps its level of detail");
+        }
+    }
+
+    @Override
+    public synchronized float getMinX() {
+        return size > 0 ? getX(0) : 0;
+    }
+
+    @Override
+    public synchronized float getMaxX() {
+        return size > 0 ? getX(size - 1) : 0;
+    }
+
+    @Override
+    public synchronized float getMinY() {
+        if (size == 0) return 0;
+        updateYBounds();
+        return minY;
+    }
+
+    @Override
+    public synchronized float getMaxY() {
+        if (size == 0) return 0;
+        updateYBounds();
+        return maxY;
+    }
+
+    private void updateYBounds() {
+        if (hasYBounds) return;
+        getYRange(0, size, range);
+        minY = range[0];
+        maxY = range[1];
+        hasYBounds = true;
+    }
+
+    @Override
+    public boolean isSortedX() {
+        return true;
+    }
+
+    @Override
+    synchronized int lowerBound(float x) {
+        return bound(x, false);
+    }
+
+    @Override
+    synchronized int upperBound(float x) {
+        return bound(x, true);
+    }
+
+    @Override
+    synchronized void getYRange(int from, int to, float[] out) {
+        super.getYRange(from, to, out);
+    }
+
+    @Override
+    synchronized int sample(int from, int to, int columns, int[] out) {
+        return super.sample(from, to, columns, out);
+    }
+
+    @Override
+    synchronized int getModCount() {
+        return modCount;
+    }
+
+    @Override
+    synchronized int getRewriteCount() {
+        return rewriteCount;
+    }
+
+    @Override
+    MinMaxPyramid newPyramid() {
+        return new MinMaxPyramid(BLOCK_SHIFT);
+    }
+
+    /**
+     * Returns a view of the points there are now that reads through to this
+     * line: copying them would mean reading every page.
+     */
+    @Override
+    synchronized Line snapshot() {
+        return new Snapshot(this, size, modCount, rewriteCount, isSortedX());
+    }
+
+    @Override
+    boolean hasLabels() {
+        return false;
+    }
+
+    /**
+     * Binary search over the first point of each block once every block has
+     * been read, so only the page holding the answer is touched; over the
+     * points themselves before that.
+     */
+    private int bound(float x, boolean upper) {
+        int low = 0, high = size;
+        int blocks = blockCount(size);
+        if (summarized == blocks && blocks > 0) {
+            int lowBlock = 0, highBlock = blocks;
+            while (lowBlock < highBlock) {
+                int mid = (lowBlock + highBlock) >>> 1;
+                float first = overviewX[mid * 4];
+                if (upper ? first <= x : first < x) {
+                    lowBlock = mid + 1;
+                } else {
+                    highBlock = mid;
+                }
+            }
+            if (lowBlock == 0) return 0;
+            low = (lowBlock - 1) << BLOCK_SHIFT;
+            high = Math.min(lowBlock << BLOCK_SHIFT, size);
+        }
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            float value = getX(mid);
+            if (upper ? value <= x : value < x) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int overviewSlot(int index) {
+        checkIndex(index);
+        int base = (index >> BLOCK_SHIFT) * 4;
+        if (overviewIndex[base] < 0) return -1;
+        for (int slot = base; slot < base + 4; slot++) {
+            if (overviewIndex[slot] == index) return slot;
+        }
+        return -1;
+    }
+
+    private Page page(int index) {
+        Integer key = index / pageSize;
+        Page page = pages.get(key);
+        if (page == null) {
+            page = spare != null ? spare : new Page(pageSize);
+            spare = null;
+            page.start = key * pageSize;
+            page.count = Math.min(pageSize, size - page.start);
+            source.read(page.start, page.start + page.count, page.xs, page.ys, 0);
+            summarize(page);
+            pages.put(key, page);
+        }
+        lastPage = page;
+        return page;
+    }
+
+    private void summarize(Page page) {
+        int end = page.start + page.count;
+        for (int first = page.start; first < end; first += 1 << BLOCK_SHIFT) {
+            int base = (first >> BLOCK_SHIFT) * 4;
+            if (overviewIndex[base] >= 0) continue;
+            int last = Math.min(first + (1 << BLOCK_SHIFT), end) - 1;
+            int min = first, max = first;
+            for (int i = first + 1; i <= last; i++) {
+                float y = page.ys[i - page.start];
+                if (y < page.ys[min - page.start]) min = i;
+                if (y > page.ys[max - page.start]) max = i;
+            }
+            store(base, first, page);
+            store(base + 1, min, page);
+            store(base + 2, max, page);
+            store(base + 3, last, page);
+            summarized++;
+        }
+    }
+
+    private void store(int slot, int index, Page page) {
+        overviewIndex[slot] = index;
+        overviewX[slot] = page.xs[index - page.start];
+        overviewY[slot] = page.ys[index - page.start];
+    }
+
+    /**
+     * Brings the page and block summary holding {@code index}, the last point
+     * before an append, up to date with the points appended after it. A
+     * partial page is read on from where it ended instead of again.
+     */
+    private void extendTail(int index) {
+        int base = (index >> BLOCK_SHIFT) * 4;
+        if (((index + 1) & ((1 << BLOCK_SHIFT) - 1)) != 0 && overviewIndex[base] >= 0) {
+            overviewIndex[base] = -1;
+            summarized--;
+        }
+        Page page = pages.get(index / pageSize);
+        if (page == null) return;
+        int end = Math.min(page.start + pageSize, size);
+        if (end > page.start + page.count) {
+            source.read(page.start + page.count, end, page.xs, page.ys, page.count);
+            page.count = end - page.start;
+        }
+        summarize(page);
+    }
+
+    private void dropAll() {
+        pages.clear();
+        lastPage = null;
+        overviewIndex = new int[0];
+        overviewX = new float[0];
+        overviewY = new float[0];
+        summarized = 0;
+        hasYBounds = false;
+    }
+
+    private void ensureOverview(int count) {
+        int slots = blockCount(count) * 4;
+        if (overviewIndex.length >= slots) return;
+        int capacity = Math.max(slots, overviewIndex.length + (overviewIndex.length >> 1));
+        int[] newIndex = new int[capacity];
+        float[] newX = new float[capacity];
+        float[] newY = new float[capacity];
+        System.arraycopy(overviewIndex, 0, newIndex, 0, overviewIndex.length);
+        System.arraycopy(overviewX, 0, newX, 0, overviewX.length);
+        System.arraycopy(overviewY, 0, newY, 0, overviewY.length);
+        for (int slot = overviewIndex.length; slot < capacity; slot++) {
+            newIndex[slot] = -1;
+        }
+        overviewIndex = newIndex;
+        overviewX = newX;
+        overviewY = newY;
+    }
+
+    private static int blockCount(int size) {
+        return (size + (1 << BLOCK_SHIFT) - 1) >> BLOCK_SHIFT;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    /**
+     * The X value at {@code index} for a snapshot that may be older than the
+     * last {@link #refresh()} or {@link #reload()}: an index past the end
+     * reads the last point, and an empty line reads 0.
+     */
+    synchronized float getSnapshotX(int index) {
+        return size > 0 ? getX(Math.min(index, size - 1)) : 0;
+    }
+
+    synchronized float getSnapshotY(int index) {
+        return size > 0 ? getY(Math.min(index, size - 1)) : 0;
+    }
+
+    synchronized void getSnapshotYRange(int from, int to, float[] out) {
+        to = Math.min(to, size);
+        if (from < to) {
+            getYRange(from, to, out);
+        } else {
+            out[0] = out[1] = getSnapshotY(from);
+        }
+    }
+
+    synchronized int getSnapshotSample(int from, int to, int columns, int[] out) {
+        to = Math.min(to, size);
+        return from < to ? sample(from, to, columns, out) : 0;
+    }
+
+    /**
+     * The first points of a {@link SourceLine}, as many as it had when the
+     * snapshot was taken, for the render thread to draw while the UI thread
+     * refreshes the line. Until the line shrinks or is reloaded it is only
+     * appended to, so reading through to it sees the values the snapshot was
+     * taken over. After that reads are clamped to what the line still has,
+     * and the frame is replaced by the one the change schedules.
+     */
+    static final class Snapshot extends Line {
+
+        private final SourceLine line;
+        private final int size;
+        private final int modCount;
+        private final int rewriteCount;
+        private final boolean sortedX;
+
+        Snapshot(SourceLine line, int size, int modCount, int rewriteCount, boolean sortedX) {
+            this.line = line;
+            this.size = size;
+            this.modCount = modCount;
+            this.rewriteCount = rewriteCount;
+            this.sortedX = sortedX;
+            setColor(line.getColor());
+            setShowingPoints(line.isShowingPoints());
+        }
+
+        @Override
+        public float getX(int index) {
+            checkIndex(index);
+            return line.getSnapshotX(index);
+        }
+
+        @Override
+        public float getY(int index) {
+            checkIndex(index);
+            return line.getSnapshotY(index);
+        }
+
+        @Override
+        public int getSize() {
+            return size;
+        }
+
+        @Override
+        public String getLabel(int index) {
+            checkIndex(index);
+            return null;
+        }
+
+        @Override
+        public boolean isLevelOfDetailEnabled() {
+            return true;
+        }
+
+        @Override
+        public float getMinX() {
+            if (!sortedX) return line.getMinX();
+            return size > 0 ? line.getSnapshotX(0) : 0;
+        }
+
+        @Override
+        public float getMaxX() {
+            if (!sortedX) return line.getMaxX();
+            return size > 0 ? line.getSnapshotX(size - 1) : 0;
+        }
+
+        @Override
+        public float getMinY() {
+            return line.getMinY();
+        }
+
+        @Override
+        public float getMaxY() {
+            return line.getMaxY();
+        }
+
+        @Override
+        public boolean isSortedX() {
+            return sortedX;
+        }
+
+        @Override
+        int lowerBound(float x) {
+            return Math.min(line.lowerBound(x), size);
+        }
+
+        @Override
+        int upperBound(float x) {
+            return Math.min(line.upperBound(x), size);
+        }
+
+        @Override
+        void getYRange(int from, int to, float[] out) {
+            line.getSnapshotYRange(from, to, out);
+        }
+
+        @Override
+        int sample(int from, int to, int columns, int[] out) {
+            return line.getSnapshotSample(from, to, columns, out);
+        }
+
+        @Override
+        MinMaxPyramid getPyramid() {
+            return line.getPyramid();
+        }
+
+        @Override
+        int getModCount() {
+            return modCount;
+        }
+
+        @Override
+        int getRewriteCount() {
+            return rewriteCount;
+        }
+
+        @Override
+        Line getOrigin() {
+            return line;
+        }
+
+        @Override
+        Line snapshot() {
+            return this;
+        }
+
+        @Override
+        boolean hasLabels() {
+            return false;
+        }
+
+        private void checkIndex(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+        }
+
+    }
+
+    private static final class Page {
+
+        final float[] xs;
+        final float[] ys;
+        int start;
+        int count;
+
+        Page(int capacity) {
+            xs = new float[capacity];
+            ys = new float[capacity];
+        }
+
+    }
+
+}
@@ -0,0 +1,384 @@
+/*
+ * 	   Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+
+package com.echo.holographlibrary;
+
+/**
+ * A {@link Line} with a fixed capacity, backed by a circular buffer. Once full,
+ * every append evicts the oldest point, so memory stays constant no matter how
+ * long the line is fed. Index 0 is always the oldest point still held.
+ * <p>
+ * The Y bounds are kept in monotonic queues, so they stay O(1) amortized per
+ * append even as extremes are evicted. The X bounds are read from the two ends
+ * of the buffer as long as points arrive in increasing X order.
+ * <p>
+ * Labels and {@link #removePoint(int)} are not supported.
+ */
+public class StreamingLine extends Line {
+
+    private final float[] xs;
+    private final float[] ys;
+    private final MonotonicQueue minYQueue;
+    private final MonotonicQueue maxYQueue;
+    private int head;
+    private int size;
+    private int modCount;
+    private int rewriteCount;
+    private boolean sortedX = true;
+    private boolean boundsDirty = false;
+    private float minX, maxX;
+
+    public StreamingLine(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        xs = new float[capacity];
+        ys = new float[capacity];
+        minYQueue = new MonotonicQueue(capacity, false);
+        maxYQueue = new MonotonicQueue(capacity, true);
+    }
+
+    public int getCapacity() {
+        return xs.length;
+    }
+
+    @Override
+    public void addPoint(float x, float y) {
+        boolean evicted = size == xs.length;
+        append(x, y);
+        if (evicted) {
+            firePointsRemoved(0, 1);
+        }
+        firePointsAppended(size - 1, 1);
+    }
+
+    @Override
+    public void addPoints(float[] xs, float[] ys, int off, int len) {
+        if (off < 0 || len < 0 || off + len > xs.length || off + len > ys.length) {
+            throw new IndexOutOfBoundsException("off=" + off + ", len=" + len);
+        }
+        int oldSize = size;
+        for (int i = off; i < off + len; i++) {
+            append(xs[i], ys[i]);
+        }
+        int evicted = Math.min(oldSize, Math.max(0, oldSize + len - this.xs.length));
+        int kept = Math.min(len, this.xs.length);
+        if (evicted > 0) {
+            firePointsRemoved(0, evicted);
+        }
+        if (kept > 0) {
+            firePointsAppended(size - kept, kept);
+        }
+    }
+
+    private void append(float x, float y) {
+        int slot;
+        boolean evicting = size == xs.length;
+        if (evicting) {
+            slot = head;
+            minYQueue.evict(slot);
+            maxYQueue.evict(slot);
+            if (!sortedX && (xs[slot] == minX || xs[slot] == maxX)) {
+                boundsDirty = true;
+            }
+            head = (head + 1) % xs.length;
+        } else {
+            slot = (head + size) % xs.length;
+            size++;
+        }
+        if (sortedX && size > 1 && x < xs[(head + size - 2) % xs.length]) {
+            sortedX = false;
+            boundsDirty = true;
+        }
+        xs[slot] = x;
+        ys[slot] = y;
+        modCount++;
+        if (evicting) {
+            // Every index shifted down by one.
+            rewriteCount = modCount;
+        }
+        if (!boundsDirty) {
+            minYQueue.push(slot, ys);
+            maxYQueue.push(slot, ys);
+            if (size == 1) {
+                minX = maxX = x;
+            } else {
+                if (x < minX) minX = x;
+                if (x > maxX) maxX = x;
+            }
+        }
+    }
+
+
+    @Override
+    public void removePoint(int index) {
+        throw new UnsupportedOperationException("StreamingLine only evicts its oldest point");
+    }
+
+    @Override
+    public float getX(int index) {
+        return xs[slot(index)];
+    }
+
+    @Override
+    public float getY(int index) {
+        return ys[slot(index)];
+    }
+
+    @Override
+    public void setX(int index, float x) {
+        int slot = slot(index);
+        // As in append, only an X out of order with its neighbours unsorts the
+        // line. While it stays sorted the X bounds are read off its ends.
+        if (sortedX && ((index > 0 && x < getX(index - 1)) || (index < size - 1 && x > getX(index + 1)))) {
+            sortedX = false;
+        }
+        xs[slot] = x;
+        if (!sortedX) {
+            boundsDirty = true;
+        }
+        modCount++;
+        rewriteCount = modCount;
+        firePointUpdated(index);
+    }
+
+    @Override
+    public void setY(int index, float y) {
+        ys[slot(index)] = y;
+        boundsDirty = true;
+        modCount++;
+        rewriteCount = modCount;
+        firePointUpdated(index);
+    }
+
+    @Override
+    public String getLabel(int index) {
+        slot(index);
+        return null;
+    }
+
+    @Override
+    public void setLabel(int index, String label) {
+        if (label != null) {
+            throw new UnsupportedOperationException("StreamingLine does not store labels");
+        }
+    }
+
+    /**
+     * Not supported: evicting a point shifts every index, which would shift
+     * every block of the pyramid.
+     */
+    @Override
+    public void setLevelOfDetail(boolean enabled) {
+        if (enabled) {
+            throw new UnsupportedOperationException("StreamingLine does not support level of detail");
+        }
+    }
+
+    @Override
+    public void clear() {
+        int removed = size;
+        head = 0;
+        size = 0;
+        sortedX = true;
+        boundsDirty = false;
+        minYQueue.clear();
+        maxYQueue.clear();
+        modCount++;
+        rewriteCount = modCount;
+        if (removed > 0) {
+            firePointsRemoved(0, removed);
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public float getMinX() {
+        updateBounds();
+        return sortedX && size > 0 ? xs[head] : minX;
+    }
+
+    @Override
+    public float getMaxX() {
+        updateBounds();
+        return sortedX && size > 0 ? xs[(head + size - 1) % xs.length] : maxX;
+    }
+
+    @Override
+    public float getMinY() {
+        updateBounds();
+        return size > 0 ? minYQueue.peek(ys) : 0;
+    }
+
+    @Override
+    public float getMaxY() {
+        updateBounds();
+        return size > 0 ? maxYQueue.peek(ys) : 0;
+    }
+
+    /**
+     * Ranges that run to the newest point, as with a sliding X window, are
+     * answered from the monotonic queues in O(log n); other ranges are
+     * scanned.
+     */
+    @Override
+    void getYRange(int from, int to, float[] out) {
+        updateBounds();
+        if (to == size && from < size) {
+            out[0] = ys[minYQueue.firstAtOrAfter(from, head)];
+            out[1] = ys[maxYQueue.firstAtOrAfter(from, head)];
+            return;
+        }
+        float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            float y = ys[slot(i)];
+            if (y < min) min = y;
+            if (y > max) max = y;
+        }
+        out[0] = min;
+        out[1] = max;
+    }
+
+    @Override
+    public boolean isSortedX() {
+        return sortedX;
+    }
+
+    @Override
+    int getModCount() {
+        return modCount;
+    }
+
+    @Override
+    int getRewriteCount() {
+        return rewriteCount;
+    }
+
+    @Override
+    void copyPoints(float[] xs, float[] ys) {
+        int first = Math.min(size, this.xs.length - head);
+        System.arraycopy(this.xs, head, xs, 0, first);
+        System.arraycopy(this.ys, head, ys, 0, first);
+        System.arraycopy(this.xs, 0, xs, first, size - first);
+        System.arraycopy(this.ys, 0, ys, first, size - first);
+    }
+
+    @Override
+    boolean hasLabels() {
+        return false;
+    }
+
+    private int slot(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return (head + index) % xs.length;
+    }
+
+    private void updateBounds() {
+        if (!boundsDirty) return;
+        boundsDirty = false;
+        minYQueue.clear();
+        maxYQueue.clear();
+        for (int i = 0; i < size; i++) {
+            int slot = (head + i) % xs.length;
+            minYQueue.push(slot, ys);
+            maxYQueue.push(slot, ys);
+            if (i == 0) {
+                minX = maxX = xs[slot];
+            } else {
+                if (xs[slot] < minX) minX = xs[slot];
+                if (xs[slot] > maxX) maxX = xs[slot];
+            }
+        }
+    }
+
+    /**
+     * Buffer slots in insertion order whose values are monotonic, so the front
+     * is always the extreme of the points still held.
+     */
+    private static final class MonotonicQueue {
+
+        private final int[] slots;
+        private final boolean keepMax;
+        private int head;
+        private int size;
+
+        MonotonicQueue(int capacity, boolean keepMax) {
+            this.slots = new int[capacity];
+            this.keepMax = keepMax;
+        }
+
+        void push(int slot, float[] values) {
+            float value = values[slot];
+            while (size > 0) {
+                float tail = values[slots[(head + size - 1) % slots.length]];
+                if (keepMax ? tail <= value : tail >= value) {
+                    size--;
+                } else {
+                    break;
+                }
+            }
+            slots[(head + size) % slots.length] = slot;
+            size++;
+        }
+
+        void evict(int slot) {
+            if (size > 0 && slots[head] == slot) {
+                head = (head + 1) % slots.length;
+                size--;
+            }
+        }
+
+        /**
+         * Returns the first slot held whose index, counted from the oldest
+         * point at {@code bufferHead}, is at least {@code from}. That slot is
+         * the extreme of every point from {@code from} to the newest.
+         */
+        int firstAtOrAfter(int from, int bufferHead) {
+            int capacity = slots.length;
+            int low = 0, high = size - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                int index = (slots[(head + mid) % capacity] - bufferHead + capacity) % capacity;
+                if (index < from) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return slots[(head + low) % capacity];
+        }
+
+        float peek(float[] values) {
+            return values[slots[head]];
+        }
+
+        void clear() {
+            head = 0;
+            size = 0;
+        }
+
+    }
+
+}
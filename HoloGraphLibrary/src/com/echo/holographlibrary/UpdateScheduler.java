@@ -0,0 +1,202 @@
+/*
+ * 	   Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+
+package com.echo.holographlibrary;
+
+import android.annotation.TargetApi;
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Choreographer;
+import android.view.View;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Coalesces a graph's update requests into at most one invalidate per display
+ * frame, and optionally fewer. Requests may come from any thread; the first
+ * one after a frame schedules the next, the rest are absorbed. Requests for
+ * part of the view are merged into one dirty rectangle. On API 16 and up the
+ * frame is scheduled with {@link Choreographer}, below that with a message
+ * posted to the view.
+ */
+final class UpdateScheduler {
+
+    private final View view;
+    private final AtomicBoolean requested = new AtomicBoolean();
+    private final Runnable scheduleOnUiThread = new Runnable() {
+        @Override
+        public void run() {
+            scheduleFrame();
+        }
+    };
+    private final Runnable frame = new Runnable() {
+        @Override
+        public void run() {
+            doFrame();
+        }
+    };
+    private Object frameCallback;
+    private int maxFrameRate = 0;
+    private long lastFrameTime = 0;
+    private volatile int batchDepth = 0;
+    private volatile boolean wholeView;
+    private final Rect area = new Rect();
+
+    UpdateScheduler(View view) {
+        this.view = view;
+    }
+
+    /**
+     * Limits the graph to {@code framesPerSecond} updates. 0 updates at the
+     * display rate.
+     */
+    void setMaxFrameRate(int framesPerSecond) {
+        if (framesPerSecond < 0) {
+            throw new IllegalArgumentException("framesPerSecond must not be negative: " + framesPerSecond);
+        }
+        maxFrameRate = framesPerSecond;
+    }
+
+    int getMaxFrameRate() {
+        return maxFrameRate;
+    }
+
+    /**
+     * Asks for the view to be redrawn at the next allowed frame. Safe to call
+     * from any thread.
+     */
+    void schedule() {
+        wholeView = true;
+        request();
+    }
+
+    /**
+     * Asks for only {@code area} of the view to be redrawn at the next allowed
+     * frame, unless the whole view is asked for before then. Must be called on
+     * the UI thread.
+     */
+    void schedule(Rect area) {
+        this.area.union(area);
+        request();
+    }
+
+    /**
+     * Holds back frames until the matching {@link #endBatch()}. Batches nest.
+     * Must be called on the UI thread.
+     */
+    void beginBatch() {
+        batchDepth++;
+    }
+
+    /**
+     * Ends a batch and, once the outermost one ends, schedules a single frame
+     * if anything asked for one since it began.
+     */
+    void endBatch() {
+        if (batchDepth == 0) {
+            throw new IllegalStateException("endUpdate() without beginUpdate()");
+        }
+        batchDepth--;
+        if (batchDepth == 0 && requested.getAndSet(false)) {
+            request();
+        }
+    }
+
+    /**
+     * Drops a pending frame, for when the view is detached.
+     */
+    void cancel() {
+        view.removeCallbacks(scheduleOnUiThread);
+        view.removeCallbacks(frame);
+        if (frameCallback != null) {
+            FrameCallbacks.remove(frameCallback);
+        }
+        requested.set(false);
+        wholeView = false;
+        area.setEmpty();
+    }
+
+    private void request() {
+        if (requested.getAndSet(true)) return;
+        // Left requested, so endBatch() schedules it.
+        if (batchDepth > 0) return;
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            scheduleFrame();
+        } else {
+            view.post(scheduleOnUiThread);
+        }
+    }
+
+    private void scheduleFrame() {
+        long delay = 0;
+        if (maxFrameRate > 0) {
+            long next = lastFrameTime + 1000 / maxFrameRate;
+            delay = Math.max(0, next - SystemClock.uptimeMillis());
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            if (frameCallback == null) {
+                frameCallback = FrameCallbacks.create(frame);
+            }
+            FrameCallbacks.post(frameCallback, delay);
+        } else {
+            view.postDelayed(frame, delay);
+        }
+    }
+
+    private void doFrame() {
+        lastFrameTime = SystemClock.uptimeMillis();
+        requested.set(false);
+        boolean whole = wholeView;
+        wholeView = false;
+        if (whole || area.isEmpty()) {
+            view.invalidate();
+        } else {
+            view.invalidate(area);
+        }
+        area.setEmpty();
+    }
+
+    /**
+     * Keeps the {@link Choreographer} references out of UpdateScheduler so it
+     * still loads on devices older than API 16.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static final class FrameCallbacks {
+
+        static Object create(final Runnable frame) {
+            return new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    frame.run();
+                }
+            };
+        }
+
+        static void post(Object callback, long delayMillis) {
+            Choreographer.getInstance().postFrameCallbackDelayed((Choreographer.FrameCallback) callback, delayMillis);
+        }
+
+        static void remove(Object callback) {
+            Choreographer.getInstance().removeFrameCallback((Choreographer.FrameCallback) callback);
+        }
+    }
+
+}
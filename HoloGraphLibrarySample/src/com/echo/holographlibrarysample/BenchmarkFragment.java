@@ -0,0 +1,329 @@
+/*
+ * 	   Created by Daniel Nadeau
+ * 	   daniel.nadeau01@gmail.com
+ * 	   danielnadeau.blogspot.com
+ *
+ * 	   Licensed to the Apache Software Foundation (ASF) under one
+       or more contributor license agreements.  See the NOTICE file
+       distributed with this work for additional information
+       regarding copyright ownership.  The ASF licenses this file
+       to you under the Apache License, Version 2.0 (the
+       "License"); you may not use this file except in compliance
+       with the License.  You may obtain a copy of the License at
+
+         http://www.apache.org/licenses/LICENSE-2.0
+
+       Unless required by applicable law or agreed to in writing,
+       software distributed under the License is distributed on an
+       "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+       KIND, either express or implied.  See the License for the
+       specific language governing permissions and limitations
+       under the License.
+ */
+
+package com.echo.holographlibrarysample;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.support.v4.app.Fragment;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.View.MeasureSpec;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.TextView;
+
+import com.echo.holographlibrary.Line;
+import com.echo.holographlibrary.LineGraph;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Times line drawing on the device it runs on, so the numbers behind
+ * LineGraph's batched draw calls can be reproduced. Each case draws one line
+ * with point markers into a bitmap, panning before every frame so every
+ * point is projected again, and reports the median of the timed frames and
+ * the draw calls counted in the last one. The cases run on a worker thread
+ * and only post their results.
+ */
+public class BenchmarkFragment extends Fragment {
+
+	private static final int WIDTH = 1000;
+	private static final int HEIGHT = 600;
+	private static final int[] POINT_COUNTS = {1000, 10000, 100000};
+	private static final int WARMUP_FRAMES = 5;
+	private static final int TIMED_FRAMES = 30;
+
+	private final Handler ui = new Handler(Looper.getMainLooper());
+	private TextView results;
+	private Button run;
+	private Benchmark benchmark;
+
+	@Override
+	public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
+		final View v = inflater.inflate(R.layout.fragment_benchmark, container, false);
+		results = (TextView)v.findViewById(R.id.benchmark_results);
+		run = (Button)v.findViewById(R.id.benchmark_run);
+		run.setOnClickListener(new View.OnClickListener() {
+			@Override
+			public void onClick(View view) {
+				start();
+			}
+		});
+		return v;
+	}
+
+	@Override
+	public void onDestroyView() {
+		super.onDestroyView();
+		if (benchmark != null) {
+			benchmark.cancel();
+			benchmark = null;
+		}
+		results = null;
+		run = null;
+	}
+
+	private void start() {
+		run.setEnabled(false);
+		results.setText("");
+		benchmark = new Benchmark(getActivity().getApplicationContext());
+		// A looper of its own, since LineGraph's gesture detectors need one.
+		HandlerThread worker = new HandlerThread("HoloGraph benchmark");
+		worker.start();
+		new Handler(worker.getLooper()).post(benchmark);
+	}
+
+	/**
+	 * One run of every case on the worker thread. Leaving the tab cancels it
+	 * at the next frame.
+	 */
+	private final class Benchmark implements Runnable {
+
+		private final Context context;
+		private final Paint linePaint = new Paint();
+		private final Paint markerPaint = new Paint();
+		private volatile boolean cancelled;
+		private CountingCanvas canvas;
+
+		Benchmark(Context context) {
+			this.context = context;
+			linePaint.setAntiAlias(true);
+			linePaint.setColor(Color.parseColor("#FFBB33"));
+			linePaint.setStrokeWidth(6);
+			markerPaint.setAntiAlias(true);
+		}
+
+		void cancel() {
+			cancelled = true;
+		}
+
+		@Override
+		public void run() {
+			Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+			canvas = new CountingCanvas(bitmap);
+			print("one line with point markers, no downsampling, median ms per frame");
+			print(" points  per segment      ms  batched     ms  speedup  LineGraph ms");
+			for (int points : POINT_COUNTS) {
+				if (cancelled) break;
+				runCase(points);
+			}
+			canvas = null;
+			bitmap.recycle();
+			Looper.myLooper().quit();
+			ui.post(new Runnable() {
+				@Override
+				public void run() {
+					if (benchmark != Benchmark.this) return;
+					benchmark = null;
+					results.append("done\n");
+					run.setEnabled(true);
+				}
+			});
+		}
+
+		/**
+		 * Draws {@code points} points the way the graph did before its calls
+		 * were batched, one drawLine per segment and two drawCircle calls per
+		 * point; with the drawLines and drawPoints calls the graph makes now;
+		 * and with a LineGraph, whose frame also draws the grid.
+		 */
+		private void runCase(int points) {
+			float[] xs = new float[points];
+			float[] ys = new float[points];
+			for (int i = 0; i < points; i++) {
+				xs[i] = i;
+				ys[i] = wave(i);
+			}
+			double perSegment = timeDrawing(ys, false);
+			int perSegmentCalls = canvas.calls;
+			double batched = timeDrawing(ys, true);
+			int batchedCalls = canvas.calls;
+
+			Line line = new Line();
+			line.setPoints(xs, ys);
+			line.setColor(linePaint.getColor());
+			double graph = timePans(makeGraph(line), points - 1);
+			if (cancelled) return;
+			print(String.format(Locale.US, "%7d  %11d  %6.2f  %7d  %5.2f  %6.2fx  %12.2f",
+					points, perSegmentCalls, perSegment, batchedCalls, batched, perSegment / batched, graph));
+		}
+
+		/**
+		 * Median time of a frame that projects {@code ys} for a pan and draws
+		 * it, leaving the calls made in the last frame in {@code canvas}.
+		 */
+		private double timeDrawing(float[] ys, boolean batched) {
+			int points = ys.length;
+			float span = points - 1;
+			float[] projected = new float[points * 2];
+			float[] vertices = new float[Math.max(0, points - 1) * 4];
+			double[] times = new double[TIMED_FRAMES];
+			for (int frame = 0; frame < WARMUP_FRAMES + TIMED_FRAMES && !cancelled; frame++) {
+				float minX = (frame % 2) * span / 100;
+				long start = System.nanoTime();
+				canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+				canvas.calls = 0;
+				for (int i = 0; i < points; i++) {
+					projected[i * 2] = (i - minX) / span * WIDTH;
+					projected[i * 2 + 1] = HEIGHT - (ys[i] + 1.5f) / 3f * HEIGHT;
+				}
+				if (batched) {
+					drawBatched(projected, vertices, points);
+				} else {
+					drawPerSegment(projected, points);
+				}
+				long elapsed = System.nanoTime() - start;
+				if (frame >= WARMUP_FRAMES) {
+					times[frame - WARMUP_FRAMES] = elapsed / 1e6;
+				}
+			}
+			Arrays.sort(times);
+			return times[times.length / 2];
+		}
+
+		private void drawPerSegment(float[] projected, int points) {
+			for (int i = 1; i < points; i++) {
+				canvas.drawLine(projected[i * 2 - 2], projected[i * 2 - 1], projected[i * 2], projected[i * 2 + 1], linePaint);
+			}
+			for (int i = 0; i < points; i++) {
+				markerPaint.setColor(Color.GRAY);
+				canvas.drawCircle(projected[i * 2], projected[i * 2 + 1], 10, markerPaint);
+				markerPaint.setColor(Color.WHITE);
+				canvas.drawCircle(projected[i * 2], projected[i * 2 + 1], 5, markerPaint);
+			}
+		}
+
+		private void drawBatched(float[] projected, float[] vertices, int points) {
+			int count = 0;
+			for (int i = 1; i < points; i++) {
+				vertices[count++] = projected[i * 2 - 2];
+				vertices[count++] = projected[i * 2 - 1];
+				vertices[count++] = projected[i * 2];
+				vertices[count++] = projected[i * 2 + 1];
+			}
+			canvas.drawLines(vertices, 0, count, linePaint);
+			markerPaint.setStrokeCap(Paint.Cap.ROUND);
+			markerPaint.setColor(Color.GRAY);
+			markerPaint.setStrokeWidth(20);
+			canvas.drawPoints(projected, 0, points * 2, markerPaint);
+			markerPaint.setColor(Color.WHITE);
+			markerPaint.setStrokeWidth(10);
+			canvas.drawPoints(projected, 0, points * 2, markerPaint);
+			markerPaint.setStrokeCap(Paint.Cap.BUTT);
+			markerPaint.setStrokeWidth(0);
+		}
+
+		private LineGraph makeGraph(Line line) {
+			LineGraph graph = new LineGraph(context);
+			graph.setDownsampling(LineGraph.DOWNSAMPLING_NONE);
+			graph.setRangeY(-1.5f, 1.5f);
+			graph.addLine(line);
+			graph.measure(MeasureSpec.makeMeasureSpec(WIDTH, MeasureSpec.EXACTLY),
+					MeasureSpec.makeMeasureSpec(HEIGHT, MeasureSpec.EXACTLY));
+			graph.layout(0, 0, WIDTH, HEIGHT);
+			return graph;
+		}
+
+		/**
+		 * Median time of a LineGraph frame that pans the viewport, which leaves
+		 * the line to be culled and projected again.
+		 */
+		private double timePans(LineGraph graph, float span) {
+			double[] times = new double[TIMED_FRAMES];
+			for (int frame = 0; frame < WARMUP_FRAMES + TIMED_FRAMES && !cancelled; frame++) {
+				float minX = (frame % 2) * span / 100;
+				graph.setViewport(minX, minX + span);
+				long start = System.nanoTime();
+				graph.draw(canvas);
+				long elapsed = System.nanoTime() - start;
+				if (frame >= WARMUP_FRAMES) {
+					times[frame - WARMUP_FRAMES] = elapsed / 1e6;
+				}
+			}
+			Arrays.sort(times);
+			return times[times.length / 2];
+		}
+
+		private void print(final String line) {
+			ui.post(new Runnable() {
+				@Override
+				public void run() {
+					if (benchmark == Benchmark.this) {
+						results.append(line + "\n");
+					}
+				}
+			});
+		}
+	}
+
+	private static float wave(int i) {
+		return (float)Math.sin(i * 0.001) + (float)Math.sin(i * 0.37) * 0.1f;
+	}
+
+	/**
+	 * Counts the draw calls made on it, so the table reports the calls each
+	 * way of drawing actually made.
+	 */
+	private static final class CountingCanvas extends Canvas {
+
+		int calls;
+
+		CountingCanvas(Bitmap bitmap) {
+			super(bitmap);
+		}
+
+		@Override
+		public void drawLine(float startX, float startY, float stopX, float stopY, Paint paint) {
+			calls++;
+			super.drawLine(startX, startY, stopX, stopY, paint);
+		}
+
+		@Override
+		public void drawLines(float[] pts, int offset, int count, Paint paint) {
+			calls++;
+			super.drawLines(pts, offset, count, paint);
+		}
+
+		@Override
+		public void drawPoints(float[] pts, int offset, int count, Paint paint) {
+			calls++;
+			super.drawPoints(pts, offset, count, paint);
+		}
+
+		@Override
+		public void drawCircle(float cx, float cy, float radius, Paint paint) {
+			calls++;
+			super.drawCircle(cx, cy, radius, paint);
+		}
+	}
+}
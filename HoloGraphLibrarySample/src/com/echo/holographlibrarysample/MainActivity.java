@@ -51,6 +51,7 @@ public class MainActivity extends ActionBarActivity {
         BarFragment barFrag = new BarFragment();
         PieFragment pieFrag = new PieFragment();
         MultiSeriesDonutFragment multiSeriesDonutFrag = new MultiSeriesDonutFragment();
+        BenchmarkFragment benchmarkFrag = new BenchmarkFragment();
 		
         mTabsAdapter = new TabsAdapter(this, mViewPager);
         mTabsAdapter.addTab(bar.newTab().setText("Line"),
@@ -61,6 +62,8 @@ public class MainActivity extends ActionBarActivity {
                 PieFragment.class, null, pieFrag);
         mTabsAdapter.addTab(bar.newTab().setText("Donut"),
                 MultiSeriesDonutFragment.class, null, multiSeriesDonutFrag);
+        mTabsAdapter.addTab(bar.newTab().setText("Bench"),
+                BenchmarkFragment.class, null, benchmarkFrag);
         mViewPager.setOffscreenPageLimit(mTabsAdapter.getCount()-1);
 	}
 	